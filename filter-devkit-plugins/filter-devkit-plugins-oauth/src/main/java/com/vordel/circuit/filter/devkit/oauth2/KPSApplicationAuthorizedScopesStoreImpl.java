@@ -1,15 +1,34 @@
 package com.vordel.circuit.filter.devkit.oauth2;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.vordel.circuit.filter.devkit.context.resources.KPSStoreResource;
 import com.vordel.kps.ObjectNotFound;
 import com.vordel.kps.Store;
+import com.vordel.kps.Transaction;
+import com.vordel.trace.Trace;
 
+/**
+ * Application authorized scopes backed by the 'OAuthAuthorizationExceptions'
+ * KPS store. All application to scopes mappings are bulk loaded in background
+ * into an immutable index, then reloaded periodically
+ * (filterdevkit.oauth2.scopes.refreshInterval system property in milli-seconds,
+ * default 10000, 0 to disable). Applications found in the index do not access
+ * the store. Applications missing from the index (added since the last load),
+ * and all applications until the index is loaded, are read from the store.
+ */
 public class KPSApplicationAuthorizedScopesStoreImpl implements ApplicationAuthorizedScopesStore {
+	private static final String CONFIG_PREFIX = "filterdevkit.oauth2.scopes.";
+	private static final long DEFAULT_REFRESH_INTERVAL = 10000L;
+
 	private static final ApplicationAuthorizedScopesStore INSTANCE = getDefaultApplicationAuthorizedScopesStore();
 
 	public static ApplicationAuthorizedScopesStore getInstance() {
@@ -18,34 +37,97 @@ public class KPSApplicationAuthorizedScopesStoreImpl implements ApplicationAutho
 
 	private final Store store;
 
+	/**
+	 * application to scopes index, null if not loaded
+	 */
+	private volatile Map<String, Set<String>> index = null;
+
 	private static ApplicationAuthorizedScopesStore getDefaultApplicationAuthorizedScopesStore() {
 		Store store = KPSStoreResource.getStoreByAlias("OAuthAuthorizationExceptions");
-		
-		return new KPSApplicationAuthorizedScopesStoreImpl(store);
+		KPSApplicationAuthorizedScopesStoreImpl instance = new KPSApplicationAuthorizedScopesStoreImpl(store);
+		long interval = Long.getLong(CONFIG_PREFIX + "refreshInterval", DEFAULT_REFRESH_INTERVAL);
+
+		if (store != null) {
+			ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+				Thread thread = new Thread(runnable, "oauth-scopes-refresh");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			/* initial load is done in background, not during class initialization */
+			if (interval > 0L) {
+				executor.scheduleWithFixedDelay(() -> instance.warmUp(), 0L, interval, TimeUnit.MILLISECONDS);
+			} else {
+				executor.execute(() -> instance.warmUp());
+				executor.shutdown();
+			}
+		}
+
+		return instance;
 	}
-	
+
 	public KPSApplicationAuthorizedScopesStoreImpl(Store store) {
 		this.store = store;
 	}
-	
+
+	/**
+	 * load all application to scopes mappings from the store. The new index
+	 * replaces the current one only if the whole store has been read.
+	 *
+	 * @return 'true' if the index has been loaded
+	 */
+	public boolean warmUp() {
+		boolean loaded = false;
+
+		if (store != null) {
+			try {
+				String primaryKey = store.getPrimaryKey();
+				Map<String, Set<String>> index = new HashMap<String, Set<String>>();
+				Transaction transaction = store.beginTransaction();
+
+				try {
+					for (Map<String, Object> object : transaction.getAll()) {
+						Object applicationID = object.get(primaryKey);
+
+						if (applicationID != null) {
+							Set<String> scopes = getScopes(object, new HashSet<String>());
+
+							/* applications without scopes are also indexed, so they are not read again */
+							index.put(applicationID.toString(), Collections.unmodifiableSet(scopes));
+						}
+					}
+				} finally {
+					transaction.close();
+				}
+
+				this.index = Collections.unmodifiableMap(index);
+
+				loaded = true;
+			} catch (RuntimeException e) {
+				Trace.error("Unable to load application authorized scopes", e);
+			}
+		}
+
+		return loaded;
+	}
+
 	@Override
 	public Set<String> retrieveApplicationAuthorizedScopes(String applicationID) {
+		Map<String, Set<String>> index = this.index;
 		Set<String> result = new HashSet<String>();
+		Set<String> scopes = (index == null) || (applicationID == null) ? null : index.get(applicationID);
 
-		if (store != null) {
+		if (scopes != null) {
+			result.addAll(scopes);
+		} else if ((store != null) && (applicationID != null)) {
+			/* index not loaded yet or application added since last load */
 			try {
 				Map<String, Object> object = store.getCached(applicationID);
 
 				if (object != null) {
-					Collection<?> scopes = (Collection<?>) object.get("scopes");
-
-					if (scopes != null) {
-						scopes.forEach((scope) -> {
-							if (scope instanceof String) {
-								result.add((String) scope);
-							}
-						});
-					}
+					getScopes(object, result);
 				}
 			} catch (ObjectNotFound e) {
 				// ignore
@@ -54,4 +136,18 @@ public class KPSApplicationAuthorizedScopesStoreImpl implements ApplicationAutho
 
 		return result;
 	}
+
+	private static Set<String> getScopes(Map<String, Object> object, Set<String> result) {
+		Collection<?> scopes = (Collection<?>) object.get("scopes");
+
+		if (scopes != null) {
+			scopes.forEach((scope) -> {
+				if (scope instanceof String) {
+					result.add((String) scope);
+				}
+			});
+		}
+
+		return result;
+	}
 }
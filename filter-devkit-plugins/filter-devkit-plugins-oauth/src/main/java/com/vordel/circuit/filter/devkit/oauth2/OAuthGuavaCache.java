@@ -1,12 +1,18 @@
 package com.vordel.circuit.filter.devkit.oauth2;
 
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.vordel.apiportal.config.PortalConfiguration;
 import com.vordel.circuit.Message;
 import com.vordel.circuit.oauth.common.OAuth2Utils;
@@ -19,28 +25,121 @@ import com.vordel.common.apiserver.discovery.model.OAuthAppScope;
 import com.vordel.common.apiserver.model.OAuthClient;
 import com.vordel.trace.Trace;
 
+/**
+ * Local caches for OAuth client lookups. Each cache can be tuned using the
+ * following system properties (where &lt;cache&gt; is 'client', 'details' or
+ * 'appscopes'):
+ * <ul>
+ * <li>filterdevkit.oauth2.cache.&lt;cache&gt;.maximumSize: maximum number of
+ * entries (default 1000),</li>
+ * <li>filterdevkit.oauth2.cache.&lt;cache&gt;.expireAfterWrite: time to live
+ * in milli-seconds (default 3000),</li>
+ * <li>filterdevkit.oauth2.cache.&lt;cache&gt;.refreshAfterWrite: delay in
+ * milli-seconds after which a read triggers an asynchronous reload while the
+ * current value is still returned (default 0, disabled). This setting is
+ * ignored for the 'details' cache which loads using the current message.</li>
+ * </ul>
+ * Reloads run on a bounded pool (filterdevkit.oauth2.cache.refreshThreads,
+ * default 2). If the pool is saturated, the reload is dropped and the current
+ * value is kept until it expires.
+ */
 public class OAuthGuavaCache {
 	public static final PortalConfiguration PORTAL_CONFIG;
 
 	private static final Cache<String, CacheValueHolder<ApplicationDetails>> DETAILS_CACHE;
-	private static final Cache<String, CacheValueHolder<OAuthClient>> CLIENT_CACHE;
-	private static final Cache<String, CacheValueHolder<List<OAuthAppScope>>> APPSCOPES_CACHE;
+	private static final LoadingCache<String, CacheValueHolder<OAuthClient>> CLIENT_CACHE;
+	private static final LoadingCache<String, CacheValueHolder<List<OAuthAppScope>>> APPSCOPES_CACHE;
 
 	private static final String DETAILS_PROPERTY;
 	private static final String SCOPES_PROPERTY;
 
+	private static final String CONFIG_PREFIX = "filterdevkit.oauth2.cache.";
+
+	private static final long DEFAULT_CACHE_TTL = 3000L;
+	private static final long DEFAULT_CACHE_SIZE = 1000L;
+
 	static {
 		DETAILS_PROPERTY = "oauth.client.details";
 		SCOPES_PROPERTY = "oauth.client.appscopes";
 
-		long CACHE_TTL = 3000L;
-		long CACHE_SIZE = 1000L;
-
 		PORTAL_CONFIG = PortalConfiguration.getInstance();
 
-		CLIENT_CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).expireAfterWrite(CACHE_TTL, TimeUnit.MILLISECONDS).build();
-		DETAILS_CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).expireAfterWrite(CACHE_TTL, TimeUnit.MILLISECONDS).build();
-		APPSCOPES_CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).expireAfterWrite(CACHE_TTL, TimeUnit.MILLISECONDS).build();
+		ThreadPoolExecutor executor = createRefreshExecutor();
+
+		CLIENT_CACHE = newCacheBuilder("client", true).build(CacheLoader.asyncReloading(new CacheLoader<String, CacheValueHolder<OAuthClient>>() {
+			@Override
+			public CacheValueHolder<OAuthClient> load(String client_id) {
+				IStoreAccess storeAccess = StoreAccess.internalWithRole("admin");
+				CoreOAuthController controller = storeAccess.getOAuthController();
+				OAuthClient client = controller.internalGetOAuthClient(client_id);
+
+				return new CacheValueHolder<OAuthClient>(client);
+			}
+		}, executor));
+		DETAILS_CACHE = newCacheBuilder("details", false).build();
+		APPSCOPES_CACHE = newCacheBuilder("appscopes", true).build(CacheLoader.asyncReloading(new CacheLoader<String, CacheValueHolder<List<OAuthAppScope>>>() {
+			@Override
+			public CacheValueHolder<List<OAuthAppScope>> load(String applicationId) {
+				IStoreAccess storeAccess = StoreAccess.internalWithRole("admin");
+				CoreOAuthResourceController controller = storeAccess.getOAuthResourceController();
+				List<OAuthAppScope> scopes = controller.getScopes(applicationId);
+
+				return new CacheValueHolder<List<OAuthAppScope>>(scopes);
+			}
+		}, executor));
+	}
+
+	private static CacheBuilder<Object, Object> newCacheBuilder(String name, boolean refresh) {
+		long size = Long.getLong(CONFIG_PREFIX + name + ".maximumSize", DEFAULT_CACHE_SIZE);
+		long ttl = Long.getLong(CONFIG_PREFIX + name + ".expireAfterWrite", DEFAULT_CACHE_TTL);
+		long refreshAfter = refresh ? Long.getLong(CONFIG_PREFIX + name + ".refreshAfterWrite", 0L) : 0L;
+
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(ttl, TimeUnit.MILLISECONDS).recordStats();
+
+		if ((refreshAfter > 0L) && (refreshAfter < ttl)) {
+			builder = builder.refreshAfterWrite(refreshAfter, TimeUnit.MILLISECONDS);
+		}
+
+		return builder;
+	}
+
+	private static ThreadPoolExecutor createRefreshExecutor() {
+		final AtomicInteger count = new AtomicInteger();
+		int threads = Math.max(1, Integer.getInteger(CONFIG_PREFIX + "refreshThreads", 2));
+		/* rejected reloads fail and the cache keeps current value */
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1000), (runnable) -> {
+			Thread thread = new Thread(runnable, String.format("oauth-cache-refresh-%d", count.incrementAndGet()));
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	/**
+	 * @return statistics (hits, misses, load time) of the OAuth client cache
+	 */
+	public static CacheStats getClientCacheStats() {
+		return CLIENT_CACHE.stats();
+	}
+
+	/**
+	 * @return statistics (hits, misses, load time) of the application details
+	 *         cache
+	 */
+	public static CacheStats getDetailsCacheStats() {
+		return DETAILS_CACHE.stats();
+	}
+
+	/**
+	 * @return statistics (hits, misses, load time) of the application scopes cache
+	 */
+	public static CacheStats getScopesCacheStats() {
+		return APPSCOPES_CACHE.stats();
 	}
 
 	private static void processExecutionException(Exception e) {
@@ -59,16 +158,7 @@ public class OAuthGuavaCache {
 		List<OAuthAppScope> scopes = null;
 
 		try {
-			scopes = APPSCOPES_CACHE.get(applicationId, new Callable<CacheValueHolder<List<OAuthAppScope>>>() {
-				@Override
-				public CacheValueHolder<List<OAuthAppScope>> call() {
-					IStoreAccess storeAccess = StoreAccess.internalWithRole("admin");
-					CoreOAuthResourceController controller = storeAccess.getOAuthResourceController();
-					List<OAuthAppScope> scopes = controller.getScopes(applicationId);
-
-					return new CacheValueHolder<List<OAuthAppScope>>(scopes);
-				}
-			}).call();
+			scopes = APPSCOPES_CACHE.get(applicationId).call();
 		} catch (ExecutionException e) {
 			processExecutionException(e);
 		}
@@ -100,16 +190,7 @@ public class OAuthGuavaCache {
 
 		if (client_id != null) {
 			try {
-				client = CLIENT_CACHE.get(client_id, new Callable<CacheValueHolder<OAuthClient>>() {
-					@Override
-					public CacheValueHolder<OAuthClient> call() throws Exception {
-						IStoreAccess storeAccess = StoreAccess.internalWithRole("admin");
-						CoreOAuthController controller = storeAccess.getOAuthController();
-						OAuthClient client = controller.internalGetOAuthClient(client_id);
-
-						return new CacheValueHolder<OAuthClient>(client);
-					}
-				}).call();
+				client = CLIENT_CACHE.get(client_id).call();
 			} catch (ExecutionException e) {
 				processExecutionException(e);
 			}
@@ -1,14 +1,17 @@
 package com.vordel.circuit.filter.devkit.context;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * child first class loader for extensions. This class loader allows to specify
@@ -17,10 +20,25 @@ import java.util.Set;
  * @author rdesaintleger@axway.com
  */
 public class ExtensionClassLoader extends URLClassLoader {
+	/**
+	 * packages which can only be defined by the platform. Those classes are
+	 * delegated to the parent without any local lookup.
+	 */
+	private static final String[] PARENT_PACKAGES = { "java.", "jdk.", "sun." };
+
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
 	/**
 	 * set of classes which must be loaded locally. also map qualified names to binary names
 	 */
-	private final Map<String,String> forceLocal = new HashMap<String,String>();
+	private final Map<String,String> forceLocal;
+
+	/**
+	 * names of classes already proven absent from local jars/directories
+	 */
+	private final Set<String> notLocal = ConcurrentHashMap.newKeySet();
 
 	public ExtensionClassLoader(URL[] urls, ClassLoader parent) {
 		this(Collections.emptySet(), urls, parent);
@@ -33,12 +51,17 @@ public class ExtensionClassLoader extends URLClassLoader {
 	public ExtensionClassLoader(Set<String> forceLocal, URL[] urls, ClassLoader parent) {
 		super(urls, parent);
 
+		Map<String, String> names = new HashMap<String, String>();
+
 		for(String binaryName : forceLocal) {
 			String qualifiedName = binaryName.replace('$', '.');
 
-			this.forceLocal.put(binaryName, binaryName);
-			this.forceLocal.put(qualifiedName, binaryName);
+			names.put(binaryName, binaryName);
+			names.put(qualifiedName, binaryName);
 		}
+
+		/* read only once constructed, lookups can be done concurrently */
+		this.forceLocal = Collections.unmodifiableMap(names);
 	}
 
 	@Override
@@ -47,12 +70,17 @@ public class ExtensionClassLoader extends URLClassLoader {
 			Class<?> loaded = findLoadedClass(name);
 
 			if (loaded == null) {
-				try {
+				String binaryName = getLocalClassName(name);
+
+				if ((binaryName == null) && isParentClass(name)) {
+					/* platform class, no need to search locally */
+					loaded = super.loadClass(name, resolve);
+				} else {
 					/* find class from local jars/directories */
-					loaded = findClass(name);
-				} catch (ClassNotFoundException e) {
-					String binaryName = getLocalClassName(name);
+					loaded = findLocalClass(name);
+				}
 
+				if (loaded == null) {
 					if (binaryName != null) {
 						/*
 						 * class not found. try to retrieve class file in parent classpath and define in
@@ -61,7 +89,7 @@ public class ExtensionClassLoader extends URLClassLoader {
 						loaded = findParentClassAsLocal(binaryName);
 
 						if (loaded == null) {
-							throw e;
+							throw new ClassNotFoundException(name);
 						}
 					} else {
 						/* otherwise try parent to load class */
@@ -78,6 +106,45 @@ public class ExtensionClassLoader extends URLClassLoader {
 		}
 	}
 
+	private static boolean isParentClass(String name) {
+		for (String prefix : PARENT_PACKAGES) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * find a class in local jars/directories without throwing exceptions for
+	 * missing classes. Misses are recorded so each name is searched at most once.
+	 * 
+	 * @param name name of class to be loaded
+	 * @return loaded class or <code>null</code> if not found locally
+	 */
+	private Class<?> findLocalClass(String name) {
+		Class<?> loaded = null;
+
+		if (!notLocal.contains(name)) {
+			String path = name.replace('.', '/').concat(".class");
+
+			if (findResource(path) != null) {
+				try {
+					loaded = findClass(name);
+				} catch (ClassNotFoundException e) {
+					/* ignore, will be recorded as missing */
+				}
+			}
+
+			if (loaded == null) {
+				notLocal.add(name);
+			}
+		}
+
+		return loaded;
+	}
+
 	private String getLocalClassName(String name) {
 		String local = forceLocal.get(name);
 
@@ -108,13 +175,13 @@ public class ExtensionClassLoader extends URLClassLoader {
 
 		if (url == null) {
 			/* if not found try system classpath */
-			url = getSystemResource(name);
+			url = getSystemResource(path);
 		}
 
 		if (url != null) {
 			try {
 				/* if class stream has been found, define it locally */
-				byte[] buffer = toByteArray(url);
+				byte[] buffer = readClassBytes(url);
 
 				loaded = defineClass(name, buffer, 0, buffer.length);
 			} catch (IOException e) {
@@ -125,21 +192,43 @@ public class ExtensionClassLoader extends URLClassLoader {
 		return loaded;
 	}
 
-	private static byte[] toByteArray(URL url) throws IOException {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		InputStream in = url.openStream();
+	/**
+	 * read class bytes from the given resource URL. The content length reported by
+	 * the connection (the entry size for jar resources) is used for a single sized
+	 * read when available.
+	 * 
+	 * @param url class resource location
+	 * @return class bytes
+	 * @throws IOException if the class stream can't be read
+	 */
+	private static byte[] readClassBytes(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+
+		return toByteArray(connection.getInputStream(), connection.getContentLengthLong());
+	}
 
+	private static byte[] toByteArray(InputStream in, long size) throws IOException {
 		try {
-			byte[] buffer = new byte[1024];
+			if ((size >= 0) && (size <= Integer.MAX_VALUE)) {
+				/* size is known, read class in one pass */
+				byte[] buffer = new byte[(int) size];
+
+				new DataInputStream(in).readFully(buffer);
+
+				return buffer;
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
 			int read = 0;
 
 			while ((read = (in.read(buffer, 0, buffer.length))) > 0) {
 				out.write(buffer, 0, read);
 			}
+
+			return out.toByteArray();
 		} finally {
 			in.close();
 		}
-
-		return out.toByteArray();
 	}
 }
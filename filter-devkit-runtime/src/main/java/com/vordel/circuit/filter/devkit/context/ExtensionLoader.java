@@ -39,16 +39,23 @@ import com.vordel.trace.Trace;
  * @author rdesaintleger@axway.com
  */
 public final class ExtensionLoader implements LoadableModule {
-	private static final Map<String, ExtensionResourceProvider> LOADED_PLUGINS = new HashMap<String, ExtensionResourceProvider>();
-	private static final Map<String, ScriptExtensionFactory> LOADED_SCRIPT_EXTENSIONS = new HashMap<String, ScriptExtensionFactory>();
-	private static final Map<Class<?>, Object> LOADED_INTERFACES = new HashMap<Class<?>, Object>();
-
 	private static final List<ExtensionModule> LOADED_MODULES = new LinkedList<ExtensionModule>();
 	private static final List<Runnable> UNLOAD_CALLBACKS = new LinkedList<Runnable>();
 	private static final Set<String> REGISTERED = new HashSet<String>();
 	private static final Object SYNC = new Object();
 
-	private static boolean loaded = false;
+	/*
+	 * published registry is an immutable snapshot which is only replaced at deploy
+	 * time (while holding the SYNC monitor). Request time lookups just read the
+	 * current snapshot and never contend on the monitor. While scanning, the
+	 * registry is built in the staging registry and published in a single write
+	 * at the end of the scan. Lookups made while no registry is published wait for
+	 * the scan to complete.
+	 */
+	private static volatile Registry registry = null;
+
+	/* guarded by SYNC, only set while scanning */
+	private static Registry staging = null;
 
 	/**
 	 * extensions dictionary for selector only access.
@@ -70,23 +77,27 @@ public final class ExtensionLoader implements LoadableModule {
 		synchronized (SYNC) {
 			reset();
 
-			loaded = true;
-
 			Trace.info("scanning services for Extensions");
 
 			REGISTERED.clear();
-
-			/* scan class path for extensions */
-			scanClasses(ctx, Thread.currentThread().getContextClassLoader());
+			staging = new Registry();
+
+			try {
+				/* scan class path for extensions */
+				scanClasses(ctx, Thread.currentThread().getContextClassLoader());
+			} finally {
+				/* publish registry in a single write */
+				registry = staging.publish();
+				staging = null;
+			}
 		}
 
 		Trace.info("services scanned");
 	}
 
 	public static final boolean isLoaded() {
-		synchronized (SYNC) {
-			return loaded;
-		}
+		/* registry being built is visible from the scanning thread */
+		return (registry != null) || (Thread.holdsLock(SYNC) && (staging != null));
 	}
 
 	@Override
@@ -95,11 +106,66 @@ public final class ExtensionLoader implements LoadableModule {
 	}
 
 	private static final void checkLoadState() {
-		synchronized (SYNC) {
-			if (!loaded) {
+		getRegistry();
+	}
+
+	/**
+	 * retrieve the registry used for lookups. If no registry is published, wait
+	 * for the deployment in progress (if any). The scanning thread gets the
+	 * registry being built.
+	 * 
+	 * @return current registry
+	 */
+	private static final Registry getRegistry() {
+		Registry current = peekRegistry();
+
+		if (current == null) {
+			synchronized (SYNC) {
+				current = staging == null ? registry : staging;
+			}
+
+			if (current == null) {
 				throw new IllegalStateException("ExtensionLoader module is not available");
 			}
 		}
+
+		return current;
+	}
+
+	/**
+	 * retrieve the registry visible without waiting. The scanning thread gets the
+	 * registry being built (including when a scan runs outside of a deployment),
+	 * other threads get the published registry.
+	 * 
+	 * @return visible registry, <code>null</code> if none is published
+	 */
+	private static final Registry peekRegistry() {
+		Registry current = Thread.holdsLock(SYNC) ? staging : null;
+
+		return current == null ? registry : current;
+	}
+
+	/**
+	 * retrieve a registry to be updated. Must be called while holding the SYNC
+	 * monitor. Outside of a scan, a mutable copy of the published registry is
+	 * returned and must be published using {@link #endUpdate(Registry)}.
+	 * 
+	 * @return registry to be updated
+	 */
+	private static final Registry beginUpdate() {
+		Registry current = staging;
+
+		if (current == null) {
+			current = new Registry(getRegistry());
+		}
+
+		return current;
+	}
+
+	private static final void endUpdate(Registry updated) {
+		if (updated != staging) {
+			registry = updated.publish();
+		}
 	}
 
 	@Override
@@ -111,53 +177,62 @@ public final class ExtensionLoader implements LoadableModule {
 
 	private void reset() {
 		synchronized (SYNC) {
-			if (loaded) {
-				Iterator<ExtensionModule> modules = new ArrayList<ExtensionModule>(LOADED_MODULES).iterator();
-				Iterator<Runnable> callbacks = new ArrayList<Runnable>(UNLOAD_CALLBACKS).iterator();
+			Iterator<ExtensionModule> modules = new ArrayList<ExtensionModule>(LOADED_MODULES).iterator();
+			Iterator<Runnable> callbacks = new ArrayList<Runnable>(UNLOAD_CALLBACKS).iterator();
 
-				while (callbacks.hasNext()) {
-					try {
-						callbacks.next().run();
-					} catch (Exception e) {
-						Trace.error("got error with unload callback", e);
-					}
-
-					callbacks.remove();
+			while (callbacks.hasNext()) {
+				try {
+					callbacks.next().run();
+				} catch (Exception e) {
+					Trace.error("got error with unload callback", e);
 				}
 
-				while (modules.hasNext()) {
-					try {
-						ExtensionModule module = modules.next();
+				callbacks.remove();
+			}
 
-						module.detachModule();
+			while (modules.hasNext()) {
+				try {
+					ExtensionModule module = modules.next();
 
-						Trace.info(String.format("unloaded '%s'", module.getClass().getName()));
-					} catch (Exception e) {
-						Trace.error("got error calling detach", e);
-					}
+					module.detachModule();
 
-					modules.remove();
+					Trace.info(String.format("unloaded '%s'", module.getClass().getName()));
+				} catch (Exception e) {
+					Trace.error("got error calling detach", e);
 				}
 
-				loaded = false;
+				modules.remove();
 			}
 
 			LOADED_MODULES.clear();
 			UNLOAD_CALLBACKS.clear();
-			LOADED_PLUGINS.clear();
-			LOADED_INTERFACES.clear();
-			LOADED_SCRIPT_EXTENSIONS.clear();
 			REGISTERED.clear();
+
+			registry = null;
 		}
 	}
 
 	public static final void scanClasses(ConfigContext ctx, ClassLoader loader) {
 		synchronized (SYNC) {
-			/* scan class path for extensions */
-			List<Class<?>> scanned = ExtensionScanner.scanExtensions(loader, REGISTERED, null);
+			Registry previous = staging;
+
+			if (previous == null) {
+				/* scan outside of deployment, stage a copy of the published registry */
+				staging = beginUpdate();
+			}
 
-			/* register scanned classes */
-			ExtensionScanner.registerClasses(ctx, scanned);
+			try {
+				/* scan class path for extensions */
+				List<Class<?>> scanned = ExtensionScanner.scanExtensions(loader, REGISTERED, null);
+
+				/* register scanned classes */
+				ExtensionScanner.registerClasses(ctx, scanned);
+			} finally {
+				if (previous == null) {
+					registry = staging.publish();
+					staging = null;
+				}
+			}
 		}
 	}
 
@@ -194,9 +269,10 @@ public final class ExtensionLoader implements LoadableModule {
 	static final void registerExtensionContext(String name, ExtensionResourceProvider resources) {
 		if ((name != null) && (resources != null)) {
 			synchronized (SYNC) {
-				checkLoadState();
+				Registry updated = beginUpdate();
 
-				LOADED_PLUGINS.put(name, resources);
+				updated.plugins.put(name, resources);
+				endUpdate(updated);
 			}
 		}
 	}
@@ -221,21 +297,25 @@ public final class ExtensionLoader implements LoadableModule {
 			ScriptExtension script = mclazz.getAnnotation(ScriptExtension.class);
 
 			synchronized (SYNC) {
+				Registry updated = beginUpdate();
+
 				if (module instanceof ExtensionModule) {
 					registerExtensionModule(ctx, (ExtensionModule) module);
 				}
 
 				if (plugin != null) {
+					Map<Class<?>, Object> interfaces = updated.interfaces;
+
 					for (Class<?> iclazz : plugin.value()) {
 						if (iclazz.isInterface()) {
-							Object pred = LOADED_INTERFACES.get(iclazz);
+							Object pred = interfaces.get(iclazz);
 
 							if (pred != null) {
 								Trace.error(String.format("Duplicate instance for interface '%s'", iclazz.getName()));
 							} else if (iclazz.isAssignableFrom(mclazz)) {
 								Trace.info(String.format("registering interface instance for '%s'", iclazz.getName()));
 
-								LOADED_INTERFACES.put(iclazz, module);
+								interfaces.put(iclazz, module);
 							} else {
 								Trace.error(String.format("'%s' is not a valid interface for '%s'", iclazz.getName(), mclazz.getName()));
 							}
@@ -243,11 +323,14 @@ public final class ExtensionLoader implements LoadableModule {
 							Trace.error(String.format("'%s' is not an interface", iclazz.getName()));
 						}
 					}
+
 				}
 
 				if (script != null) {
-					registerScriptExtension(LOADED_SCRIPT_EXTENSIONS, mclazz, (iclazz) -> createScriptExtensionInstanceFactory(module, iclazz), true);
+					registerScriptExtension(updated.scriptExtensions, mclazz, (iclazz) -> createScriptExtensionInstanceFactory(module, iclazz), true);
 				}
+
+				endUpdate(updated);
 			}
 		}
 	}
@@ -262,11 +345,11 @@ public final class ExtensionLoader implements LoadableModule {
 	static final <T extends AbstractScriptExtension> void registerScriptExtension(Constructor<T> constructor) {
 		if (constructor != null) {
 			synchronized (SYNC) {
-				checkLoadState();
-
 				Class<T> mclazz = constructor.getDeclaringClass();
+				Registry updated = beginUpdate();
 
-				registerScriptExtension(LOADED_SCRIPT_EXTENSIONS, mclazz, (iclazz) -> createScriptExtensionFactory(constructor, iclazz), true);
+				registerScriptExtension(updated.scriptExtensions, mclazz, (iclazz) -> createScriptExtensionFactory(constructor, iclazz), true);
+				endUpdate(updated);
 			}
 		}
 	}
@@ -418,11 +501,18 @@ public final class ExtensionLoader implements LoadableModule {
 	}
 
 	public static final ScriptExtensionFactory getScriptExtensionFactory(String name) throws ScriptException {
+		Registry current = peekRegistry();
+
+		if (current != null) {
+			/* fast path, read visible registry */
+			return current.scriptExtensions.get(name);
+		}
+
 		synchronized (SYNC) {
 			ScriptExtensionFactory factory = null;
 
 			if (isLoaded()) {
-				factory = LOADED_SCRIPT_EXTENSIONS.get(name);
+				factory = getRegistry().scriptExtensions.get(name);
 			} else {
 				Set<String> allowed = Collections.singleton(name);
 				ClassLoader loader = ScriptExtension.class.getClassLoader();
@@ -484,11 +574,7 @@ public final class ExtensionLoader implements LoadableModule {
 	 * @return the registered context or <code>null</code> if none.
 	 */
 	public static final ExtensionResourceProvider getExtensionContext(String name) {
-		synchronized (SYNC) {
-			checkLoadState();
-
-			return LOADED_PLUGINS.get(name);
-		}
+		return getRegistry().plugins.get(name);
 	}
 
 	/**
@@ -499,12 +585,46 @@ public final class ExtensionLoader implements LoadableModule {
 	 * @return registered instance or <code>null</code> if none
 	 */
 	public static final <T> T getExtensionInstance(Class<T> clazz) {
-		synchronized (SYNC) {
-			checkLoadState();
+		Object instance = getRegistry().interfaces.get(clazz);
+
+		return instance == null ? null : clazz.cast(instance);
+	}
+
+	/**
+	 * extension registries. Published registries are read only.
+	 */
+	private static final class Registry {
+		private final Map<String, ExtensionResourceProvider> plugins;
+		private final Map<String, ScriptExtensionFactory> scriptExtensions;
+		private final Map<Class<?>, Object> interfaces;
+
+		private Registry() {
+			this.plugins = new HashMap<String, ExtensionResourceProvider>();
+			this.scriptExtensions = new HashMap<String, ScriptExtensionFactory>();
+			this.interfaces = new HashMap<Class<?>, Object>();
+		}
 
-			Object instance = LOADED_INTERFACES.get(clazz);
+		private Registry(Registry registry) {
+			this.plugins = new HashMap<String, ExtensionResourceProvider>(registry.plugins);
+			this.scriptExtensions = new HashMap<String, ScriptExtensionFactory>(registry.scriptExtensions);
+			this.interfaces = new HashMap<Class<?>, Object>(registry.interfaces);
+		}
+
+		private Registry(Map<String, ExtensionResourceProvider> plugins, Map<String, ScriptExtensionFactory> scriptExtensions, Map<Class<?>, Object> interfaces) {
+			this.plugins = plugins;
+			this.scriptExtensions = scriptExtensions;
+			this.interfaces = interfaces;
+		}
+
+		/**
+		 * @return immutable snapshot of this registry to be published to readers
+		 */
+		private Registry publish() {
+			return new Registry(publish(plugins), publish(scriptExtensions), publish(interfaces));
+		}
 
-			return instance == null ? null : clazz.cast(instance);
+		private static <K, V> Map<K, V> publish(Map<K, V> registry) {
+			return registry.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<K, V>(registry));
 		}
 	}
 }
@@ -1,15 +1,15 @@
 package com.vordel.circuit.filter.devkit.context;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
@@ -30,7 +30,7 @@ import com.vordel.circuit.filter.devkit.context.resources.SelectorResource;
 import com.vordel.circuit.filter.devkit.context.resources.SubstitutableResource;
 import com.vordel.circuit.filter.devkit.script.ScriptHelper;
 import com.vordel.common.Dictionary;
-import com.vordel.el.ContextResourceResolver;
+import com.vordel.el.ContextResourceResolver.FunctionCoercion;
 import com.vordel.el.Selector;
 import com.vordel.trace.Trace;
 
@@ -429,13 +429,22 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 			return null;
 		}
 
+		/* invoker and argument coercion are resolved once, so calls do not go through reflection */
+		final MethodHandle invoker = createInvoker(instance, method);
+		final Class<?>[] parameterTypes = method.getParameterTypes();
+		final FunctionCoercion coercion = new FunctionCoercion(method);
+
 		return new FunctionResource() {
 			@Override
 			public Object invoke(Dictionary dict, Object... args) throws CircuitAbortException {
 				try {
 					/* update arguments and prepend message/dictionary */
 					Message msg = dict instanceof Message ? (Message) dict : null;
-					Object[] params = ContextResourceResolver.coerceFunctionArguments(method, setupParams(msg, dict, dictionaryType, args));
+					Object[] params = coercion.coerce(setupParams(msg, dict, dictionaryType, args));
+
+					if (invoker == null) {
+						throw new IllegalAccessException(String.format("method '%s' is not accessible", method.getName()));
+					}
 
 					if (Trace.isDebugEnabled()) {
 						if (filterName != null) {
@@ -445,7 +454,7 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 						}
 					}
 
-					Object result = method.invoke(instance, params);
+					Object result = invokeMethod(invoker, parameterTypes, params);
 
 					if (Trace.isDebugEnabled()) {
 						Class<?> returnType = method.getReturnType();
@@ -517,22 +526,175 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 	 *         <code>null</code> if not compatible)
 	 */
 	private static Object[] setupParams(Message msg, Dictionary dict, Class<?> dictType, Object[] args) {
-		List<Object> params = new ArrayList<Object>(args.length + 1);
+		Object[] params = new Object[args.length + 1];
 		Class<?> clazz = msg == null ? Message.class : msg.getClass();
 
 		if (dictType.isAssignableFrom(clazz)) {
-			params.add(msg);
+			params[0] = msg;
 		} else if (dictType.isAssignableFrom(Dictionary.class)) {
-			params.add(dict);
+			params[0] = dict;
 		} else {
-			params.add(null);
+			params[0] = null;
+		}
+
+		System.arraycopy(args, 0, params, 1, args.length);
+
+		return params;
+	}
+
+	/**
+	 * Creates a method handle for the given method. The returned handle is bound to
+	 * the given instance (for non static methods) and takes its arguments as an
+	 * object array. Primitive arguments are unboxed and the return value is boxed
+	 * (<code>null</code> for void methods). Resolving the handle once when the
+	 * resource is created avoids reflective dispatch on each call and allows the
+	 * JIT to inline the target method.
+	 * 
+	 * @param instance reflected instance if any (maybe <code>null</code>)
+	 * @param method   method to be invoked
+	 * @return a method handle of type <code>(Object[])Object</code> or
+	 *         <code>null</code> if the method is not accessible.
+	 */
+	private static MethodHandle createInvoker(Object instance, Method method) {
+		MethodHandle invoker = null;
+
+		try {
+			invoker = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+
+			if (!Modifier.isStatic(method.getModifiers())) {
+				invoker = invoker.bindTo(instance);
+			}
+
+			invoker = invoker.asType(invoker.type().generic());
+			invoker = invoker.asSpreader(Object[].class, method.getParameterCount());
+		} catch (IllegalAccessException e) {
+			Trace.error(String.format("method '%s' is not accessible", method.getName()), e);
+
+			invoker = null;
+		}
+
+		return invoker;
+	}
+
+	/**
+	 * Invoke a method handle created by {@link #createInvoker(Object, Method)}.
+	 * Arguments are checked (and primitive wrappers widened) before invocation
+	 * like {@link Method#invoke(Object, Object...)} does, so only exceptions thrown
+	 * by the target method are wrapped in an {@link InvocationTargetException}.
+	 * 
+	 * @param invoker        method handle to be invoked
+	 * @param parameterTypes method parameter types
+	 * @param args           method arguments (converted in place)
+	 * @return method result (boxed)
+	 * @throws IllegalArgumentException  if arguments do not match the method
+	 *                                   parameters
+	 * @throws InvocationTargetException if the target method throws an exception
+	 */
+	private static Object invokeMethod(MethodHandle invoker, Class<?>[] parameterTypes, Object[] args) throws InvocationTargetException {
+		if (args.length != parameterTypes.length) {
+			throw new IllegalArgumentException("wrong number of arguments");
+		}
+
+		for (int index = 0; index < args.length; index++) {
+			args[index] = checkArgument(parameterTypes[index], args[index]);
+		}
+
+		try {
+			return (Object) invoker.invokeExact(args);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	private static final Class<?>[] NUMERIC_PRIMITIVES = { byte.class, short.class, int.class, long.class, float.class, double.class };
+	private static final Class<?>[] NUMERIC_WRAPPERS = { Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class };
+
+	/**
+	 * check an argument against its parameter type. Primitive wrappers are
+	 * converted to the exact parameter wrapper using widening conversions.
+	 * 
+	 * @param type parameter type
+	 * @param arg  argument value
+	 * @return argument to be used for invocation
+	 * @throws IllegalArgumentException if the argument can't be assigned to the
+	 *                                  parameter
+	 */
+	private static Object checkArgument(Class<?> type, Object arg) {
+		if (!type.isPrimitive()) {
+			if ((arg != null) && (!type.isInstance(arg))) {
+				throw new IllegalArgumentException("argument type mismatch");
+			}
+
+			return arg;
+		}
+
+		Object converted = null;
+
+		if (arg instanceof Boolean) {
+			converted = type == boolean.class ? arg : null;
+		} else if (arg instanceof Character) {
+			char value = (Character) arg;
+
+			converted = type == char.class ? arg : widen(type, Integer.valueOf(value), 2);
+		} else if (arg != null) {
+			converted = widen(type, arg, indexOf(NUMERIC_WRAPPERS, arg.getClass()));
+		}
+
+		if (converted == null) {
+			throw new IllegalArgumentException(arg == null ? "null argument for primitive parameter" : "argument type mismatch");
 		}
 
-		for (Object arg : args) {
-			params.add(arg);
+		return converted;
+	}
+
+	/**
+	 * apply a widening primitive conversion to a boxed number
+	 * 
+	 * @param type   primitive parameter type
+	 * @param arg    boxed number
+	 * @param source position of the number type in NUMERIC_PRIMITIVES
+	 * @return converted boxed number, <code>null</code> if conversion is not allowed
+	 */
+	private static Object widen(Class<?> type, Object arg, int source) {
+		int target = indexOf(NUMERIC_PRIMITIVES, type);
+		Object converted = null;
+
+		if ((source >= 0) && (target >= source)) {
+			Number number = (Number) arg;
+
+			switch (target) {
+			case 0:
+				converted = number.byteValue();
+				break;
+			case 1:
+				converted = number.shortValue();
+				break;
+			case 2:
+				converted = number.intValue();
+				break;
+			case 3:
+				converted = number.longValue();
+				break;
+			case 4:
+				converted = number.floatValue();
+				break;
+			default:
+				converted = number.doubleValue();
+				break;
+			}
 		}
 
-		return params.toArray();
+		return converted;
+	}
+
+	private static int indexOf(Class<?>[] types, Class<?> type) {
+		for (int index = 0; index < types.length; index++) {
+			if (types[index] == type) {
+				return index;
+			}
+		}
+
+		return -1;
 	}
 
 	/**
@@ -761,48 +923,46 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 	}
 
 	private static class MethodDictionary implements Dictionary {
-		private final Map<String, Object> properties;
+		private final Message message;
+		private final Dictionary dictionary;
 
 		private MethodDictionary(Message m, Dictionary dict) {
-			Map<String, Object> properties = new HashMap<String, Object>();
-
-			properties.put("message", m);
-			properties.put("dictionary", dict);
-
-			this.properties = Collections.unmodifiableMap(properties);
-		}
-
-		public Message getMessage() {
-			return (Message) get("message");
-		}
-
-		public Dictionary getDictionary() {
-			return (Dictionary) get("dictionary");
+			this.message = m;
+			this.dictionary = dict;
 		}
 
 		@Override
 		public Object get(String name) {
-			return properties.get(name);
+			if ("message".equals(name)) {
+				return message;
+			} else if ("dictionary".equals(name)) {
+				return dictionary;
+			}
+
+			return null;
 		}
 	}
 
 	private abstract static class InjectableParameter<T> {
-		protected abstract T resolve(MethodDictionary dictionary);
+		protected abstract T resolve(Message m, Dictionary dict);
 
 		protected abstract String debug(T resolved);
 
-		protected void resolve(MethodDictionary dictionary, int index, Object[] resolved, String[] debug) {
-			T value = resolve(dictionary);
+		protected void resolve(Message m, Dictionary dict, int index, Object[] resolved, String[] debug) {
+			T value = resolve(m, dict);
 
 			resolved[index] = value;
-			debug[index] = Trace.isDebugEnabled() ? debug(value) : null;
+
+			if (debug != null) {
+				debug[index] = debug(value);
+			}
 		}
 	}
 
 	private static class DictionaryParameter extends InjectableParameter<Dictionary> {
 		@Override
-		protected Dictionary resolve(MethodDictionary dictionary) {
-			return dictionary.getDictionary();
+		protected Dictionary resolve(Message m, Dictionary dict) {
+			return dict;
 		}
 
 		@Override
@@ -813,8 +973,8 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 
 	private static class MessageParameter extends InjectableParameter<Message> {
 		@Override
-		protected Message resolve(MethodDictionary dictionary) {
-			return dictionary.getMessage();
+		protected Message resolve(Message m, Dictionary dict) {
+			return m;
 		}
 
 		@Override
@@ -826,10 +986,20 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 	private static class AttributeParameter<T> extends InjectableParameter<T> {
 		private final Selector<T> selector;
 		private final String attributeName;
+		private final Class<T> type;
 
 		private AttributeParameter(String attributeName, Class<T> type) {
-			this.selector = SelectorResource.fromExpression(String.format("dictionary[\"%s\"]", escapeQuotes(attributeName)), type);
+			/*
+			 * plain attribute names are read directly from the dictionary, selector is
+			 * only used if the name contains escape sequences
+			 */
+			this.selector = isPlainAttributeName(attributeName) ? null : SelectorResource.fromExpression(String.format("dictionary[\"%s\"]", escapeQuotes(attributeName)), type);
 			this.attributeName = attributeName;
+			this.type = type;
+		}
+
+		private static final boolean isPlainAttributeName(String attributeName) {
+			return attributeName.indexOf('\\') == -1;
 		}
 		
 		private static final String escapeQuotes(String attributeName) {
@@ -847,8 +1017,40 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 		}
 
 		@Override
-		protected T resolve(MethodDictionary dictionary) {
-			return selector.substitute(dictionary);
+		protected T resolve(Message m, Dictionary dict) {
+			if (selector != null) {
+				return selector.substitute(new MethodDictionary(m, dict));
+			}
+
+			return coerce(dict == null ? null : dict.get(attributeName));
+		}
+
+		/**
+		 * coerce a dictionary value to the parameter type. This reproduces the
+		 * devkit:value() selector behavior : missing values and dictionary slices are
+		 * resolved as <code>null</code>, conversion errors are silenced.
+		 * 
+		 * @param value raw dictionary value
+		 * @return coerced value or <code>null</code>
+		 */
+		private T coerce(Object value) {
+			T result = null;
+
+			if (!SelectorResource.isNull(value)) {
+				if (type.isInstance(value)) {
+					result = type.cast(value);
+				} else {
+					try {
+						result = Selector.getTypeConverter().convert(value, type);
+					} catch (RuntimeException e) {
+						if (Trace.isDebugEnabled()) {
+							Trace.debug(String.format("unable to coerce attribute '%s' to '%s'", attributeName, type.getName()), e);
+						}
+					}
+				}
+			}
+
+			return result;
 		}
 
 		@Override
@@ -877,8 +1079,8 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 		}
 
 		@Override
-		protected T resolve(MethodDictionary dictionary) {
-			return selector.substitute(dictionary.getDictionary());
+		protected T resolve(Message m, Dictionary dict) {
+			return selector.substitute(dict);
 		}
 
 		@Override
@@ -899,18 +1101,20 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 
 	private static class ReflectedResource<T> {
 		private final InjectableParameter<?>[] parameters;
-		private final Object instance;
 		private final String name;
 		private final String filterName;
 		private final Class<T> returnType;
+		private final MethodHandle invoker;
+		private final Class<?>[] parameterTypes;
 
 		protected final Method method;
 
 		private ReflectedResource(Object instance, AnnotatedMethod annotated, Class<T> returnType, String name, String filterName) {
 			this.parameters = processInjectableParameters(annotated);
 			this.method = annotated.getMethod();
+			this.invoker = createInvoker(instance, method);
+			this.parameterTypes = method.getParameterTypes();
 
-			this.instance = instance;
 			this.name = name;
 			this.filterName = filterName;
 			this.returnType = returnType;
@@ -921,29 +1125,31 @@ public final class ExtensionResourceProvider extends AbstractContextResourceProv
 		}
 
 		protected T invokeMethod(Dictionary dict) throws InvocationTargetException {
-			MethodDictionary dictionary = new MethodDictionary(dict instanceof Message ? (Message) dict : null, dict);
+			Message m = dict instanceof Message ? (Message) dict : null;
 			T result = null;
 
 			try {
+				boolean debugEnabled = Trace.isDebugEnabled();
 				Object[] resolved = new Object[parameters.length];
-				String[] debug = new String[parameters.length];
+				String[] debug = debugEnabled ? new String[parameters.length] : null;
 
 				for (int index = 0; index < parameters.length; index++) {
 					InjectableParameter<?> resolver = parameters[index];
 
 					if (resolver != null) {
-						resolver.resolve(dictionary, index, resolved, debug);
-					} else {
-						resolved[index] = null;
-						debug[index] = null;
+						resolver.resolve(m, dict, index, resolved, debug);
 					}
 				}
 
-				if (Trace.isDebugEnabled()) {
+				if (debugEnabled) {
 					debugInvoke(method, debug, name, filterName);
 				}
 
-				Object value = method.invoke(instance, resolved);
+				if (invoker == null) {
+					throw new IllegalAccessException(String.format("method '%s' is not accessible", method.getName()));
+				}
+
+				Object value = ExtensionResourceProvider.invokeMethod(invoker, parameterTypes, resolved);
 
 				if (Trace.isDebugEnabled()) {
 					Class<?> returnType = method.getReturnType();
@@ -1,6 +1,8 @@
 package com.vordel.circuit.filter.devkit.context;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,6 +14,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
@@ -20,6 +23,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import javax.annotation.Priority;
@@ -36,6 +44,23 @@ import com.vordel.el.Selector;
 import com.vordel.trace.Trace;
 
 public class ExtensionScanner {
+	/**
+	 * binary index files generated by the annotation processors. Format must be
+	 * kept in sync with ExtensionProviderGenerator and ExtensionLibrariesGenerator.
+	 */
+	private static final String EXTENSIONS_INDEX = "META-INF/vordel/extensions.idx";
+	private static final String LIBRARIES_INDEX = "META-INF/vordel/libraries.idx";
+
+	private static final int INDEX_MAGIC = 0x56444B58;
+	private static final int INDEX_VERSION = 1;
+
+	private static final int FLAG_LIBRARIES = 0x08;
+
+	/**
+	 * maximum number of threads used to load extension classes
+	 */
+	private static final int SCANNER_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
 	private ExtensionScanner() {
 	}
 
@@ -140,6 +165,79 @@ public class ExtensionScanner {
 		}
 	}
 
+	/**
+	 * read binary extension indexes generated at build time. Extensions which are
+	 * not part of an index (built with an older processor) will be scanned using
+	 * per class resources.
+	 * 
+	 * @param loader class loader used to scan extensions
+	 * @return indexed extensions (by binary name)
+	 */
+	private static Map<String, IndexedExtension> readExtensionIndex(ClassLoader loader) {
+		Map<String, IndexedExtension> index = new HashMap<String, IndexedExtension>();
+
+		readExtensionIndex(loader, EXTENSIONS_INDEX, (in) -> {
+			String clazzName = in.readUTF();
+			IndexedExtension entry = index.computeIfAbsent(clazzName, (key) -> new IndexedExtension());
+
+			entry.priority = in.readInt();
+			entry.flags = in.readUnsignedByte();
+			entry.interfaces = readIndexStrings(in, new HashSet<String>());
+		});
+
+		readExtensionIndex(loader, LIBRARIES_INDEX, (in) -> {
+			String clazzName = in.readUTF();
+			IndexedExtension entry = index.computeIfAbsent(clazzName, (key) -> new IndexedExtension());
+
+			entry.libraries = readIndexStrings(in, new ArrayList<String>());
+			entry.forceLoad = readIndexStrings(in, new HashSet<String>());
+		});
+
+		return index;
+	}
+
+	private static void readExtensionIndex(ClassLoader loader, String resources, IndexEntryReader action) {
+		try {
+			Enumeration<URL> configs = loader.getResources(resources);
+
+			while (configs.hasMoreElements()) {
+				URL config = configs.nextElement();
+
+				try {
+					DataInputStream in = new DataInputStream(new BufferedInputStream(config.openStream()));
+
+					try {
+						if ((in.readInt() != INDEX_MAGIC) || (in.readUnsignedShort() != INDEX_VERSION)) {
+							Trace.error(String.format("Unsupported extension index '%s'", config));
+						} else {
+							int count = in.readInt();
+
+							for (int index = 0; index < count; index++) {
+								action.read(in);
+							}
+						}
+					} finally {
+						in.close();
+					}
+				} catch (IOException e) {
+					Trace.error(String.format("Unable to read extension index '%s'", config), e);
+				}
+			}
+		} catch (IOException e) {
+			Trace.error(String.format("Unable to read extension resources '%s'", resources), e);
+		}
+	}
+
+	private static <C extends Collection<String>> C readIndexStrings(DataInputStream in, C values) throws IOException {
+		int count = in.readUnsignedShort();
+
+		for (int index = 0; index < count; index++) {
+			values.add(in.readUTF());
+		}
+
+		return values;
+	}
+
 	static List<Class<?>> scanExtensions(ClassLoader loader, Set<String> registered, Set<String> allowed) {
 		Set<String> clazzes = new HashSet<String>();
 
@@ -147,13 +245,14 @@ public class ExtensionScanner {
 			clazzes.add(clazzName);
 		});
 
+		Map<String, IndexedExtension> index = readExtensionIndex(loader);
 		List<Class<?>> scanned = new ArrayList<Class<?>>();
 
 		if (allowed != null) {
 			Map<String, String> discovered = new HashMap<String, String>();
 
 			for (String binaryName : clazzes) {
-				Set<String> scriptExtensions = getScriptExtensionInterfaces(loader, binaryName);
+				Set<String> scriptExtensions = getScriptExtensionInterfaces(loader, index.get(binaryName), binaryName);
 
 				String qualifiedName = binaryName.replace('$', '.');
 
@@ -174,21 +273,31 @@ public class ExtensionScanner {
 			clazzes.retainAll(discovered.values());
 		}
 
-		for (String clazzName : clazzes) {
+		/*
+		 * when available, use indexed priority so classes are loaded and initialized
+		 * in registration order
+		 */
+		List<String> ordered = new ArrayList<String>(clazzes);
+
+		Collections.sort(ordered, (n1, n2) -> {
+			IndexedExtension e1 = index.get(n1);
+			IndexedExtension e2 = index.get(n2);
+
+			return Integer.compare(e1 == null ? 0 : e1.priority, e2 == null ? 0 : e2.priority);
+		});
+
+		List<String> pending = new ArrayList<String>();
+
+		for (String clazzName : ordered) {
 			if (registered.add(clazzName)) {
-				try {
-					/*
-					 * create classes which expose ExtensionContext or ExtensionInstance annotation
-					 */
-					scanned.add(Class.forName(clazzName, false, getClassLoader(loader, clazzName)));
-				} catch (Exception e) {
-					Trace.error(String.format("Got exception loading class '%s'", clazzName), e);
-				} catch (Error e) {
-					Trace.error(String.format("Got error loading class '%s'", clazzName), e);
-				}
+				pending.add(clazzName);
 			}
 		}
 
+		/* load classes (without initialization) and keep scan order */
+		scanned.addAll(resolveClasses(loader, index, pending));
+
+		/* class initialization stays sequential and ordered */
 		for (Class<?> loaded : scanned) {
 			String clazzName = loaded.getName();
 
@@ -203,7 +312,89 @@ public class ExtensionScanner {
 		return scanned;
 	}
 
-	private static Set<String> getScriptExtensionInterfaces(ClassLoader loader, String clazzName) {
+	/**
+	 * load extension classes without initializing them. Class loaders creation and
+	 * class resolution are independent for each extension, so they are run on a
+	 * bounded worker pool. Returned list keeps the order of the given names.
+	 * 
+	 * @param loader     parent ClassLoader
+	 * @param index      build time index entries
+	 * @param clazzNames binary names of classes to be loaded
+	 * @return loaded classes (classes which failed to load are omitted)
+	 */
+	private static List<Class<?>> resolveClasses(ClassLoader loader, Map<String, IndexedExtension> index, List<String> clazzNames) {
+		List<Class<?>> resolved = new ArrayList<Class<?>>();
+		int threads = Math.min(SCANNER_THREADS, clazzNames.size());
+
+		if (threads < 2) {
+			for (String clazzName : clazzNames) {
+				Class<?> clazz = resolveClass(loader, index.get(clazzName), clazzName);
+
+				if (clazz != null) {
+					resolved.add(clazz);
+				}
+			}
+		} else {
+			AtomicInteger counter = new AtomicInteger();
+			ExecutorService executor = Executors.newFixedThreadPool(threads, (runnable) -> {
+				Thread thread = new Thread(runnable, String.format("ExtensionScanner-%d", counter.incrementAndGet()));
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			try {
+				List<Future<Class<?>>> futures = new ArrayList<Future<Class<?>>>();
+
+				for (String clazzName : clazzNames) {
+					futures.add(executor.submit(() -> resolveClass(loader, index.get(clazzName), clazzName)));
+				}
+
+				for (int position = 0; position < futures.size(); position++) {
+					try {
+						Class<?> clazz = futures.get(position).get();
+
+						if (clazz != null) {
+							resolved.add(clazz);
+						}
+					} catch (ExecutionException e) {
+						Trace.error(String.format("Got exception loading class '%s'", clazzNames.get(position)), e.getCause());
+					}
+				}
+			} catch (InterruptedException e) {
+				Trace.error("Interrupted while loading extension classes", e);
+
+				Thread.currentThread().interrupt();
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		return resolved;
+	}
+
+	private static Class<?> resolveClass(ClassLoader loader, IndexedExtension indexed, String clazzName) {
+		try {
+			/*
+			 * create classes which expose ExtensionContext or ExtensionInstance annotation
+			 */
+			return Class.forName(clazzName, false, getClassLoader(loader, indexed, clazzName));
+		} catch (Exception e) {
+			Trace.error(String.format("Got exception loading class '%s'", clazzName), e);
+		} catch (Error e) {
+			Trace.error(String.format("Got error loading class '%s'", clazzName), e);
+		}
+
+		return null;
+	}
+
+	private static Set<String> getScriptExtensionInterfaces(ClassLoader loader, IndexedExtension indexed, String clazzName) {
+		if ((indexed != null) && (indexed.interfaces != null)) {
+			/* interfaces are already known from index */
+			return indexed.interfaces;
+		}
+
 		String resourceName = String.format("META-INF/vordel/scriptextensions/%s", clazzName);
 		URL scriptExtensions = loader.getResource(resourceName);
 		Set<String> interfaces = new HashSet<String>();
@@ -221,16 +412,42 @@ public class ExtensionScanner {
 	 * create a child first classloader for an extension module (or context)
 	 * 
 	 * @param loader    parent ClassLoader
+	 * @param indexed   build time index entry for the class (may be
+	 *                  <code>null</code>)
 	 * @param clazzName class to be loaded.
 	 * @return
 	 */
-	private static ClassLoader getClassLoader(ClassLoader loader, String clazzName) {
-		String libs = String.format("META-INF/vordel/libraries/%s", clazzName);
-		URL jars = loader.getResource(libs);
-		Set<File> scanned = new HashSet<File>();
+	private static ClassLoader getClassLoader(ClassLoader loader, IndexedExtension indexed, String clazzName) {
+		List<String> libraries = null;
+		Set<String> forceLoad = null;
+
+		if ((indexed != null) && (indexed.interfaces != null) && ((indexed.flags & FLAG_LIBRARIES) == 0)) {
+			/* index tells this class is not annotated with ExtensionLibraries */
+			return loader;
+		} else if ((indexed != null) && (indexed.libraries != null)) {
+			libraries = indexed.libraries;
+			forceLoad = new HashSet<String>(indexed.forceLoad);
+			forceLoad.add(clazzName);
+		} else {
+			String libs = String.format("META-INF/vordel/libraries/%s", clazzName);
+			URL jars = loader.getResource(libs);
+
+			if (jars != null) {
+				List<String> entries = new ArrayList<String>();
+
+				readExtensionResource(jars, (fileName) -> {
+					entries.add(fileName);
+				});
+
+				libraries = entries;
+				forceLoad = getForceLoads(loader, clazzName);
+			}
+		}
 
-		if (jars != null) {
-			readExtensionResource(jars, (fileName) -> {
+		if (libraries != null) {
+			Set<File> scanned = new HashSet<File>();
+
+			for (String fileName : libraries) {
 				Selector<String> selector = SelectorResource.fromLiteral(fileName, String.class, true);
 				File file = new File(selector.substitute(Dictionary.empty));
 
@@ -239,7 +456,7 @@ public class ExtensionScanner {
 				}
 
 				scanJavaArchives(file, scanned);
-			});
+			}
 
 			Set<URL> urls = new HashSet<URL>();
 
@@ -251,7 +468,7 @@ public class ExtensionScanner {
 				}
 			}
 
-			loader = new ExtensionClassLoader(getForceLoads(loader, clazzName), urls.toArray(new URL[0]), loader);
+			loader = new ExtensionClassLoader(forceLoad, urls.toArray(new URL[0]), loader);
 		}
 
 		return loader;
@@ -423,4 +640,31 @@ public class ExtensionScanner {
 			constructor.setAccessible(false);
 		}
 	}
+
+	@FunctionalInterface
+	private interface IndexEntryReader {
+		void read(DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * ordering and resource probe information read from the build time extension
+	 * index.
+	 */
+	private static final class IndexedExtension {
+		private int priority = 0;
+		private int flags = 0;
+
+		/**
+		 * script extension interfaces, <code>null</code> if this class is not part of
+		 * the extension index
+		 */
+		private Set<String> interfaces = null;
+
+		/**
+		 * class path entries, <code>null</code> if this class is not part of the
+		 * libraries index
+		 */
+		private List<String> libraries = null;
+		private Set<String> forceLoad = null;
+	}
 }
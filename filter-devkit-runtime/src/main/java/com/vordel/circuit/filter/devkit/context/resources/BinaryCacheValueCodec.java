@@ -0,0 +1,497 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vordel.dwe.InputStreamContentSource;
+import com.vordel.mime.Body;
+import com.vordel.mime.ContentType;
+import com.vordel.mime.HeaderSet;
+
+/**
+ * Compact binary codec. Strings, byte arrays, numbers, JSON nodes, message
+ * bodies (with content type and headers), maps and lists are written using a
+ * tagged binary format. Other serializable values are written using Java
+ * serialization. Encoded values are stored in cache as {@link EncodedValue}
+ * instances.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class BinaryCacheValueCodec implements CacheValueCodec {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_STRING = 1;
+	private static final int TAG_BYTES = 2;
+	private static final int TAG_BOOLEAN = 3;
+	private static final int TAG_BYTE = 4;
+	private static final int TAG_SHORT = 5;
+	private static final int TAG_INTEGER = 6;
+	private static final int TAG_LONG = 7;
+	private static final int TAG_FLOAT = 8;
+	private static final int TAG_DOUBLE = 9;
+	private static final int TAG_BIGINTEGER = 10;
+	private static final int TAG_BIGDECIMAL = 11;
+	private static final int TAG_CHARACTER = 12;
+	private static final int TAG_JSON = 13;
+	private static final int TAG_BODY = 14;
+	private static final int TAG_MAP = 15;
+	private static final int TAG_LIST = 16;
+	private static final int TAG_SERIALIZED = 17;
+
+	@Override
+	public Serializable encode(Object value) throws IOException {
+		EncodedValue encoded = null;
+
+		try {
+			encoded = value == null ? null : new EncodedValue(toByteArray(value));
+		} catch (NotSerializableException e) {
+			/* value (or one of its members) can't be encoded */
+		}
+
+		return encoded;
+	}
+
+	@Override
+	public Object decode(Object stored) throws IOException {
+		Object result = null;
+
+		if (stored instanceof EncodedValue) {
+			result = fromByteArray(((EncodedValue) stored).data);
+		} else {
+			/* value stored using Java serialization */
+			result = SERIALIZED.decode(stored);
+		}
+
+		return result;
+	}
+
+	/**
+	 * encode a value using the binary format
+	 *
+	 * @param value value to be encoded
+	 * @return encoded value
+	 * @throws NotSerializableException if the value (or one of its members) is not
+	 *                                  supported and not serializable
+	 * @throws IOException              if any other encoding error occurs
+	 */
+	public static byte[] toByteArray(Object value) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+
+		writeValue(out, value);
+		out.flush();
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * decode a value encoded with the binary format
+	 *
+	 * @param data encoded value
+	 * @return decoded value
+	 * @throws IOException if the given data is invalid
+	 */
+	public static Object fromByteArray(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		Object value = readValue(in);
+
+		if (in.read() != -1) {
+			throw new StreamCorruptedException("trailing data after encoded value");
+		}
+
+		return value;
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(TAG_STRING);
+			writeBytes(out, ((String) value).getBytes(UTF_8));
+		} else if (value instanceof byte[]) {
+			out.writeByte(TAG_BYTES);
+			writeBytes(out, (byte[]) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TAG_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(TAG_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Short) {
+			out.writeByte(TAG_SHORT);
+			writeVarLong(out, (Short) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(TAG_INTEGER);
+			writeVarLong(out, (Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TAG_LONG);
+			writeVarLong(out, (Long) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TAG_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TAG_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value.getClass() == BigInteger.class) {
+			out.writeByte(TAG_BIGINTEGER);
+			writeBytes(out, ((BigInteger) value).toByteArray());
+		} else if (value.getClass() == BigDecimal.class) {
+			BigDecimal decimal = (BigDecimal) value;
+
+			out.writeByte(TAG_BIGDECIMAL);
+			writeVarLong(out, decimal.scale());
+			writeBytes(out, decimal.unscaledValue().toByteArray());
+		} else if (value instanceof Character) {
+			out.writeByte(TAG_CHARACTER);
+			out.writeChar((Character) value);
+		} else if (value instanceof JsonNode) {
+			out.writeByte(TAG_JSON);
+			writeBytes(out, MAPPER.writeValueAsBytes(value));
+		} else if (value instanceof Body) {
+			out.writeByte(TAG_BODY);
+			writeBody(out, (Body) value);
+		} else if ((value.getClass() == HashMap.class) || (value.getClass() == LinkedHashMap.class)) {
+			Map<?, ?> map = (Map<?, ?>) value;
+
+			out.writeByte(TAG_MAP);
+			writeVarLong(out, map.size());
+
+			for (Entry<?, ?> entry : map.entrySet()) {
+				writeValue(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		} else if ((value.getClass() == ArrayList.class) || (value.getClass() == LinkedList.class)) {
+			List<?> list = (List<?>) value;
+
+			out.writeByte(TAG_LIST);
+			writeVarLong(out, list.size());
+
+			for (Object item : list) {
+				writeValue(out, item);
+			}
+		} else if (value instanceof Serializable) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			ObjectOutputStream serializer = new ObjectOutputStream(buffer);
+
+			try {
+				serializer.writeObject(value);
+			} finally {
+				/* close object outputstream to ensure output is flushed */
+				serializer.close();
+			}
+
+			out.writeByte(TAG_SERIALIZED);
+			writeBytes(out, buffer.toByteArray());
+		} else {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		Object value = null;
+
+		switch (tag) {
+		case TAG_NULL:
+			break;
+		case TAG_STRING:
+			value = new String(readBytes(in), UTF_8);
+			break;
+		case TAG_BYTES:
+			value = readBytes(in);
+			break;
+		case TAG_BOOLEAN:
+			value = in.readBoolean();
+			break;
+		case TAG_BYTE:
+			value = in.readByte();
+			break;
+		case TAG_SHORT:
+			value = (short) readVarLong(in);
+			break;
+		case TAG_INTEGER:
+			value = (int) readVarLong(in);
+			break;
+		case TAG_LONG:
+			value = readVarLong(in);
+			break;
+		case TAG_FLOAT:
+			value = in.readFloat();
+			break;
+		case TAG_DOUBLE:
+			value = in.readDouble();
+			break;
+		case TAG_BIGINTEGER:
+			value = new BigInteger(readBytes(in));
+			break;
+		case TAG_BIGDECIMAL: {
+			int scale = (int) readVarLong(in);
+
+			value = new BigDecimal(new BigInteger(readBytes(in)), scale);
+			break;
+		}
+		case TAG_CHARACTER:
+			value = in.readChar();
+			break;
+		case TAG_JSON:
+			value = MAPPER.readTree(readBytes(in));
+			break;
+		case TAG_BODY:
+			value = readBody(in);
+			break;
+		case TAG_MAP: {
+			int size = readSize(in);
+			Map<Object, Object> map = new LinkedHashMap<Object, Object>(Math.max(16, (int) (size / 0.75f) + 1));
+
+			for (int index = 0; index < size; index++) {
+				Object key = readValue(in);
+
+				map.put(key, readValue(in));
+			}
+
+			value = map;
+			break;
+		}
+		case TAG_LIST: {
+			int size = readSize(in);
+			List<Object> list = new ArrayList<Object>(size);
+
+			for (int index = 0; index < size; index++) {
+				list.add(readValue(in));
+			}
+
+			value = list;
+			break;
+		}
+		case TAG_SERIALIZED: {
+			ObjectInputStream deserializer = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+
+			try {
+				value = deserializer.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("can't decode serialized value", e);
+			} finally {
+				deserializer.close();
+			}
+			break;
+		}
+		default:
+			throw new StreamCorruptedException(String.format("invalid value tag %d", tag));
+		}
+
+		return value;
+	}
+
+	private static void writeBody(DataOutputStream out, Body body) throws IOException {
+		ContentType contentType = body.getContentType();
+		HeaderSet headers = body.getHeaders();
+		List<String> names = new ArrayList<String>();
+		List<String> values = new ArrayList<String>();
+
+		if (headers != null) {
+			Iterator<String> iterator = headers.getHeaderNames();
+
+			while (iterator.hasNext()) {
+				String name = iterator.next();
+				Iterator<String> header = headers.getHeaders(name);
+
+				while (header.hasNext()) {
+					names.add(name);
+					values.add(header.next());
+				}
+			}
+		}
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		body.write(content, Body.WRITE_NO_CTE);
+
+		writeString(out, contentType == null ? null : contentType.toString());
+		writeVarLong(out, names.size());
+
+		for (int index = 0; index < names.size(); index++) {
+			writeString(out, names.get(index));
+			writeString(out, values.get(index));
+		}
+
+		writeBytes(out, content.toByteArray());
+	}
+
+	private static Body readBody(DataInputStream in) throws IOException {
+		String type = readString(in);
+		int count = readSize(in);
+		HeaderSet headers = new HeaderSet();
+
+		for (int index = 0; index < count; index++) {
+			String name = readString(in);
+
+			headers.addHeader(name, readString(in));
+		}
+
+		ContentType contentType = type == null ? null : new ContentType(ContentType.Authority.MIME, type);
+
+		return Body.create(headers, contentType, new InputStreamContentSource(new ByteArrayInputStream(readBytes(in))));
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeVarLong(out, 0);
+		} else {
+			byte[] data = value.getBytes(UTF_8);
+
+			/* lengths are shifted by one to distinguish null from empty strings */
+			writeVarLong(out, data.length + 1L);
+			out.write(data);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		long length = readVarLong(in);
+		String value = null;
+
+		if (length > 0) {
+			byte[] data = new byte[checkSize(in, length - 1)];
+
+			in.readFully(data);
+			value = new String(data, UTF_8);
+		}
+
+		return value;
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+		writeVarLong(out, data.length);
+		out.write(data);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] data = new byte[readSize(in)];
+
+		in.readFully(data);
+
+		return data;
+	}
+
+	private static int readSize(DataInputStream in) throws IOException {
+		return checkSize(in, readVarLong(in));
+	}
+
+	private static int checkSize(DataInputStream in, long size) throws IOException {
+		/* encoded values are read from memory, size can't exceed remaining bytes */
+		if ((size < 0) || (size > in.available())) {
+			throw new StreamCorruptedException(String.format("invalid encoded size %d", size));
+		}
+
+		return (int) size;
+	}
+
+	/**
+	 * write a zig-zag encoded variable length integer (small absolute values use
+	 * less bytes).
+	 *
+	 * @param out   output stream
+	 * @param value value to be written
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		long encoded = (value << 1) ^ (value >> 63);
+
+		while ((encoded & ~0x7FL) != 0) {
+			out.writeByte((int) ((encoded & 0x7F) | 0x80));
+			encoded >>>= 7;
+		}
+
+		out.writeByte((int) encoded);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long encoded = 0L;
+		int shift = 0;
+		int b = 0;
+
+		do {
+			if (shift > 63) {
+				throw new StreamCorruptedException("invalid variable length integer");
+			}
+
+			b = in.readUnsignedByte();
+			encoded |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return (encoded >>> 1) ^ -(encoded & 1);
+	}
+
+	/**
+	 * cache representation of binary encoded values. This class is externalizable
+	 * so only the encoded bytes are written when the cache serializes the value.
+	 */
+	public static final class EncodedValue implements Externalizable {
+		private static final long serialVersionUID = -3904297846271843541L;
+
+		private byte[] data;
+
+		/**
+		 * public constructor needed for externalization
+		 */
+		public EncodedValue() {
+		}
+
+		private EncodedValue(byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeInt(data.length);
+			out.write(data);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			byte[] data = new byte[in.readInt()];
+
+			in.readFully(data);
+
+			this.data = data;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(data);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			/* allows compare and set operations on encoded values */
+			return (obj instanceof EncodedValue) && Arrays.equals(data, ((EncodedValue) obj).data);
+		}
+	}
+}
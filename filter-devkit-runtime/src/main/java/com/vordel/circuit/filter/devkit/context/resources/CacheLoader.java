@@ -0,0 +1,35 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import com.vordel.circuit.CircuitAbortException;
+
+/**
+ * Cache fill function used by
+ * {@link CacheResource#getOrLoad(Object, CacheLoader, int)}.
+ *
+ * @author rdesaintleger@axway.com
+ */
+@FunctionalInterface
+public interface CacheLoader {
+	/**
+	 * compute the value to be cached for the given key
+	 *
+	 * @param key requested cache key
+	 * @return value to be cached, <code>null</code> if no value is available (in
+	 *         this case nothing is cached)
+	 * @throws CircuitAbortException if the value can't be loaded
+	 */
+	public Object load(Object key) throws CircuitAbortException;
+
+	/**
+	 * Tells if this loader can be run by a background thread to refresh entries
+	 * ahead of their expiration. Loaders bound to the calling message must return
+	 * 'false', in this case the refresh is done by the first caller which reads
+	 * the entry during the refresh window, and this caller gets the reloaded
+	 * value.
+	 *
+	 * @return 'true' if this loader does not depend on the calling thread
+	 */
+	public default boolean isAsynchronous() {
+		return true;
+	}
+}
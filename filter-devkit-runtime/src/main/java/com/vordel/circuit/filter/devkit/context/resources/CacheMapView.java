@@ -58,7 +58,17 @@ public class CacheMapView extends AbstractMap<Object, Object> {
 
 	@Override
 	public boolean containsKey(Object key) {
-		return keySet().contains(key);
+		boolean contained = false;
+
+		if (resource != null) {
+			try {
+				contained = resource.isKeyInCache(key);
+			} catch (CircuitAbortException e) {
+				Trace.error("Unable to check key in Cache", e);
+			}
+		}
+
+		return contained;
 	}
 
 	@Override
@@ -101,7 +111,7 @@ public class CacheMapView extends AbstractMap<Object, Object> {
 			try {
 				previous = resource.putCachedValue(key, null);
 			} catch (CircuitAbortException e) {
-				Trace.error("Unable to put value in Cache", e);
+				Trace.error("Unable to remove value from Cache", e);
 			}
 		}
 
@@ -1,9 +1,25 @@
 package com.vordel.circuit.filter.devkit.context.resources;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.vordel.circuit.CircuitAbortException;
 import com.vordel.trace.Trace;
@@ -16,6 +32,22 @@ import com.vordel.trace.Trace;
  * @author rdesaintleger@axway.com
  */
 public abstract class CacheResource implements ContextResource, ViewableResource {
+	/**
+	 * background threads used to refresh entries ahead of expiration
+	 */
+	private static final ExecutorService REFRESH_EXECUTOR = createRefreshExecutor();
+
+	/**
+	 * number of keys retrieved at once when iterating on values or entries
+	 */
+	private static final int ITERATION_BATCH_SIZE = 64;
+
+	/**
+	 * loads in progress for this cache instance (see
+	 * {@link #getOrLoad(Object, CacheLoader, int)})
+	 */
+	private final ConcurrentMap<Object, LoadTask> loading = new ConcurrentHashMap<Object, LoadTask>();
+
 	/**
 	 * Check if the given key is contained into the cache
 	 * 
@@ -111,6 +143,150 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 	 */
 	public abstract Object putCachedValue(Object key, Object serializable, int ttl) throws CircuitAbortException;
 
+	/**
+	 * set a key/value mapping in the underlying cache using the default cache TTL
+	 * only if no mapping exists for the given key.
+	 * 
+	 * @param key
+	 *            cache key. should be serializable depending on the underlying
+	 *            implementation
+	 * @param serializable
+	 *            value to be set. should be serializable depending on the
+	 *            underlying implementation
+	 * @return existing value if any (in this case the cache is not modified),
+	 *         null if the value has been set
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public Object putIfAbsent(Object key, Object serializable) throws CircuitAbortException {
+		return putIfAbsent(key, serializable, 0);
+	}
+
+	/**
+	 * set a key/value mapping in the underlying cache using a specific TTL only if
+	 * no mapping exists for the given key. The default implementation is not
+	 * atomic, sub classes should override when the underlying cache provides a
+	 * conditional put.
+	 * 
+	 * @param key
+	 *            cache key. should be serializable depending on the underlying
+	 *            implementation
+	 * @param serializable
+	 *            value to be set. should be serializable depending on the
+	 *            underlying implementation
+	 * @param ttl
+	 *            overridden TTL for this mapping
+	 * @return existing value if any (in this case the cache is not modified),
+	 *         null if the value has been set
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public Object putIfAbsent(Object key, Object serializable, int ttl) throws CircuitAbortException {
+		Object existing = getCachedValue(key);
+
+		if ((existing == null) && (serializable != null) && (ttl >= 0)) {
+			setCachedValue(key, serializable, ttl);
+		}
+
+		return existing;
+	}
+
+	/**
+	 * replace an existing key/value mapping using the default cache TTL. If no
+	 * mapping exists for the given key, the cache is not modified.
+	 * 
+	 * @param key
+	 *            cache key. should be serializable depending on the underlying
+	 *            implementation
+	 * @param serializable
+	 *            value to be set. should be serializable depending on the
+	 *            underlying implementation
+	 * @return replaced value, null if there was no mapping for the given key
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public Object replaceCachedValue(Object key, Object serializable) throws CircuitAbortException {
+		return replaceCachedValue(key, serializable, 0);
+	}
+
+	/**
+	 * replace an existing key/value mapping using a specific TTL. If no mapping
+	 * exists for the given key, the cache is not modified. The default
+	 * implementation is not atomic, sub classes should override when the
+	 * underlying cache provides a conditional replace.
+	 * 
+	 * @param key
+	 *            cache key. should be serializable depending on the underlying
+	 *            implementation
+	 * @param serializable
+	 *            value to be set. should be serializable depending on the
+	 *            underlying implementation
+	 * @param ttl
+	 *            overridden TTL for this mapping
+	 * @return replaced value, null if there was no mapping for the given key
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public Object replaceCachedValue(Object key, Object serializable, int ttl) throws CircuitAbortException {
+		Object existing = getCachedValue(key);
+
+		if (existing != null) {
+			setCachedValue(key, serializable, ttl);
+		}
+
+		return existing;
+	}
+
+	/**
+	 * set a key/value mapping using the default cache TTL only if the current
+	 * mapped value is equal to the expected one.
+	 * 
+	 * @param key
+	 *            cache key. should be serializable depending on the underlying
+	 *            implementation
+	 * @param expected
+	 *            expected current value, null if no mapping is expected
+	 * @param serializable
+	 *            value to be set, null to remove the mapping
+	 * @return 'true' if the cache has been updated, 'false' otherwise.
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public boolean compareAndSet(Object key, Object expected, Object serializable) throws CircuitAbortException {
+		return compareAndSet(key, expected, serializable, 0);
+	}
+
+	/**
+	 * set a key/value mapping using a specific TTL only if the current mapped value
+	 * is equal to the expected one. This method allows implementation of counters
+	 * without a read-then-write race. The default implementation is not atomic,
+	 * sub classes should override when the underlying cache provides a compare and
+	 * set operation.
+	 * 
+	 * @param key
+	 *            cache key. should be serializable depending on the underlying
+	 *            implementation
+	 * @param expected
+	 *            expected current value, null if no mapping is expected
+	 * @param serializable
+	 *            value to be set, null to remove the mapping
+	 * @param ttl
+	 *            overridden TTL for this mapping
+	 * @return 'true' if the cache has been updated, 'false' otherwise.
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public boolean compareAndSet(Object key, Object expected, Object serializable, int ttl) throws CircuitAbortException {
+		Object existing = getCachedValue(key);
+		boolean updated = expected == null ? existing == null : expected.equals(existing);
+
+		if (updated) {
+			setCachedValue(key, serializable, ttl);
+		}
+
+		return updated;
+	}
+
 	/**
 	 * Retrieve the cached value mapped by the given key
 	 * 
@@ -122,6 +298,260 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 	 */
 	public abstract Object getCachedValue(Object key) throws CircuitAbortException;
 
+	/**
+	 * Retrieve the cached value mapped by the given key, loading it using the
+	 * default cache TTL if absent.
+	 * 
+	 * @param key
+	 *            key to be retrieved
+	 * @param loader
+	 *            cache fill function
+	 * @return mapped or loaded value, null if the loader did not return a value
+	 * @throws CircuitAbortException
+	 *             if any error occurs (including loader errors).
+	 * @see #getOrLoad(Object, CacheLoader, int)
+	 */
+	public Object getOrLoad(Object key, CacheLoader loader) throws CircuitAbortException {
+		return getOrLoad(key, loader, 0);
+	}
+
+	/**
+	 * Retrieve the cached value mapped by the given key, loading it if absent.
+	 * Concurrent misses for the same key on this gateway instance are coalesced:
+	 * only one caller runs the loader, others wait for its result (or its error).
+	 * The loaded value is shared between waiting callers and must not be modified.
+	 * Loads are not coordinated between gateway instances of a distributed cache.
+	 * A loader which requests its own key from this cache is rejected instead of
+	 * waiting for itself.
+	 * 
+	 * @param key
+	 *            key to be retrieved
+	 * @param loader
+	 *            cache fill function
+	 * @param ttl
+	 *            overridden TTL for the loaded mapping
+	 * @return mapped or loaded value, null if the loader did not return a value
+	 * @throws CircuitAbortException
+	 *             if any error occurs (including loader errors and recursive
+	 *             loads of the same key).
+	 */
+	public Object getOrLoad(final Object key, final CacheLoader loader, final int ttl) throws CircuitAbortException {
+		Object value = key == null ? null : getCachedValue(key);
+
+		if ((value == null) && (key != null) && (loader != null)) {
+			LoadTask task = new LoadTask(() -> {
+				/* value may have been loaded while this task was registered */
+				Object loaded = getCachedValue(key);
+
+				if (loaded == null) {
+					loaded = loader.load(key);
+
+					if (loaded != null) {
+						setCachedValue(key, loaded, ttl);
+					}
+				}
+
+				return loaded;
+			});
+			LoadTask flight = loading.putIfAbsent(key, task);
+
+			if ((flight != null) && (flight.owner == Thread.currentThread())) {
+				/* the loader of this key is running on this thread, waiting would deadlock */
+				throw new CircuitAbortException(String.format("Recursive load of cache key '%s'", String.valueOf(key)));
+			}
+
+			if (flight == null) {
+				flight = task;
+
+				try {
+					task.run();
+				} finally {
+					loading.remove(key, task);
+				}
+			}
+
+			try {
+				value = flight.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				throw new CircuitAbortException("Interrupted while waiting for cache load", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof CircuitAbortException) {
+					throw (CircuitAbortException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+
+				throw new CircuitAbortException("Unable to load cache value", cause);
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Retrieve the cached value mapped by the given key, loading it if absent.
+	 * Entries read less than refreshAhead seconds before their expiration trigger
+	 * a single reload while callers keep getting the current value, so hot entries
+	 * do not expire under load. Refresh is done in background if the loader
+	 * supports it (see {@link CacheLoader#isAsynchronous()}), otherwise by the
+	 * caller which triggers it (this caller gets the reloaded value). Refresh errors are logged and the current value is
+	 * kept until it expires. Refresh ahead requires an implementation which is
+	 * able to report entry expiration (see {@link #getRemainingTime(Object)}),
+	 * otherwise this method behaves as
+	 * {@link #getOrLoad(Object, CacheLoader, int)}.
+	 * 
+	 * @param key
+	 *            key to be retrieved
+	 * @param loader
+	 *            cache fill function
+	 * @param ttl
+	 *            overridden TTL for the loaded mapping
+	 * @param refreshAhead
+	 *            refresh window in seconds before expiration (0 to disable)
+	 * @return mapped or loaded value, null if the loader did not return a value
+	 * @throws CircuitAbortException
+	 *             if any error occurs (including loader errors on cache miss).
+	 */
+	public Object getOrLoad(Object key, CacheLoader loader, int ttl, int refreshAhead) throws CircuitAbortException {
+		Object value = getOrLoad(key, loader, ttl);
+
+		if ((value != null) && (loader != null) && (refreshAhead > 0)) {
+			long remaining = getRemainingTime(key);
+
+			if ((remaining >= 0) && (remaining <= (refreshAhead * 1000L))) {
+				Object refreshed = refresh(key, loader, ttl);
+
+				if (refreshed != null) {
+					/* reload has been done by this thread */
+					value = refreshed;
+				}
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Retrieve remaining time to live of an entry. Used to refresh entries ahead of
+	 * expiration. The default implementation does not track expiration.
+	 * 
+	 * @param key
+	 *            key to be checked
+	 * @return remaining time in milli-seconds, -1 if the entry does not exist,
+	 *         never expires or if expiration is unknown.
+	 * @throws CircuitAbortException
+	 *             if any error occurs.
+	 */
+	protected long getRemainingTime(Object key) throws CircuitAbortException {
+		return -1L;
+	}
+
+	/**
+	 * start a reload of the given key unless a load is already in progress.
+	 * 
+	 * @param key
+	 *            key to be reloaded
+	 * @param loader
+	 *            cache fill function
+	 * @param ttl
+	 *            overridden TTL for the reloaded mapping
+	 * @return reloaded value if the reload has been done by the calling thread,
+	 *         null otherwise
+	 */
+	private Object refresh(final Object key, final CacheLoader loader, final int ttl) {
+		final LoadTask task = new LoadTask(() -> {
+			Object loaded = loader.load(key);
+
+			if (loaded != null) {
+				setCachedValue(key, loaded, ttl);
+			}
+
+			return loaded;
+		});
+
+		Object refreshed = null;
+
+		if (loading.putIfAbsent(key, task) == null) {
+			if (loader.isAsynchronous()) {
+				REFRESH_EXECUTOR.execute(() -> runRefresh(key, task));
+			} else {
+				refreshed = runRefresh(key, task);
+			}
+		}
+
+		return refreshed;
+	}
+
+	/**
+	 * run a registered reload task and unregister it.
+	 * 
+	 * @param key
+	 *            key to be reloaded
+	 * @param task
+	 *            registered reload task
+	 * @return reloaded value, null if reload failed
+	 */
+	private Object runRefresh(Object key, LoadTask task) {
+		try {
+			task.run();
+
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Trace.error(String.format("Unable to refresh cache key '%s'", String.valueOf(key)), e.getCause());
+		} finally {
+			loading.remove(key, task);
+		}
+
+		return null;
+	}
+
+	/**
+	 * in flight load, records the thread running the loader so recursive loads
+	 * can be detected.
+	 */
+	private static final class LoadTask extends FutureTask<Object> {
+		private volatile Thread owner = null;
+
+		private LoadTask(Callable<Object> callable) {
+			super(callable);
+		}
+
+		@Override
+		public void run() {
+			owner = Thread.currentThread();
+
+			try {
+				super.run();
+			} finally {
+				owner = null;
+			}
+		}
+	}
+
+	private static ExecutorService createRefreshExecutor() {
+		final AtomicInteger count = new AtomicInteger();
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), (runnable) -> {
+			Thread thread = new Thread(runnable, String.format("cache-refresh-%d", count.incrementAndGet()));
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
 	/**
 	 * Removes the cached value mapped by the given key
 	 * 
@@ -134,7 +564,79 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 	public abstract boolean removeCacheEntry(Object key) throws CircuitAbortException;
 
 	/**
-	 * @return cache key/value mappings count.
+	 * Retrieve cached values mapped by the given keys. The default implementation
+	 * issues one lookup per key, sub classes should override when the underlying
+	 * cache provides a native bulk lookup.
+	 * 
+	 * @param keys
+	 *            keys to be retrieved
+	 * @return map containing found mappings only (missing keys are not present in
+	 *         the result).
+	 * @throws CircuitAbortException
+	 *             if any error occurs.
+	 */
+	public Map<Object, Object> getAll(Collection<?> keys) throws CircuitAbortException {
+		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+
+		if (keys != null) {
+			for (Object key : keys) {
+				Object value = key == null ? null : getCachedValue(key);
+
+				if (value != null) {
+					result.put(key, value);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * set all key/value mappings of the given map in the underlying cache using a
+	 * specific TTL, ignoring preexisting values if any. As for
+	 * {@link #setCachedValue(Object, Object, int)} null values (or a negative TTL)
+	 * removes the corresponding mappings.
+	 * 
+	 * @param values
+	 *            key/value mappings to be set
+	 * @param ttl
+	 *            overridden TTL for those mappings (0 for cache default)
+	 * @throws CircuitAbortException
+	 *             If a cache error occurs.
+	 */
+	public void putAll(Map<?, ?> values, int ttl) throws CircuitAbortException {
+		if (values != null) {
+			for (Entry<?, ?> entry : values.entrySet()) {
+				Object key = entry.getKey();
+
+				if (key != null) {
+					setCachedValue(key, entry.getValue(), ttl);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the cached values mapped by the given keys.
+	 * 
+	 * @param keys
+	 *            keys to be removed
+	 * @throws CircuitAbortException
+	 *             if any error occurs.
+	 */
+	public void removeAll(Collection<?> keys) throws CircuitAbortException {
+		if (keys != null) {
+			for (Object key : keys) {
+				if (key != null) {
+					removeCacheEntry(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return cache key/value mappings count. Implementations should return this
+	 *         value without enumerating cache keys.
 	 * @throws CircuitAbortException
 	 *             if any error occurs.
 	 */
@@ -152,7 +654,9 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 	}
 
 	/**
-	 * remove all mappings caontained in this cache.
+	 * remove all mappings caontained in this cache. The default implementation
+	 * removes keys one by one, sub classes should override when the underlying
+	 * cache can be cleared natively.
 	 * 
 	 * @throws CircuitAbortException
 	 *             if any error occurs.
@@ -217,121 +721,26 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 	public abstract Iterator<?> keys() throws CircuitAbortException;
 
 	/**
-	 * retrieve cache values as iterator
+	 * retrieve cache values as iterator. Values are retrieved lazily by batches of
+	 * keys using {@link #getAll(Collection)}.
 	 * 
 	 * @return all values present in cache
 	 * @throws CircuitAbortException if unable to retrieve cache value iterator
 	 */
 	public Iterator<?> values() throws CircuitAbortException {
-		/*
-		 * return a simple iterator which retrieve value for each key. sub classes are
-		 * free to override for optimization
-		 */
-		return new Iterator<Object>() {
-			private final Iterator<?> iterator = keys();
-
-			private boolean remove = false;
-			private Object value = null;
-
+		return new BatchIterator<Object>() {
 			@Override
-			public boolean hasNext() {
-				if (value == null) {
-					remove = false;
-
-					try {
-						while ((value == null) && iterator.hasNext()) {
-							Object key = iterator.next();
-
-							value = key == null ? null : getCachedValue(key);
-						}
-					} catch (CircuitAbortException e) {
-						Trace.error("unable to retrieve value from key", e);
-					}
-				}
-
-				return value != null;
-			}
-
-			@Override
-			public Object next() {
-				if (!hasNext()) {
-					throw new NoSuchElementException();
-				}
-
-				try {
-					return value;
-				} finally {
-					remove = true;
-					value = null;
-				}
-			}
-
-			@Override
-			public void remove() {
-				if (!remove) {
-					throw new IllegalStateException("no previous value returned by 'next()'");
-				}
-
-				remove = false;
-				iterator.remove();
+			protected Object next(Entry<Object, Object> entry) {
+				return entry.getValue();
 			}
 		};
 	}
 
 	protected Iterator<Entry<Object, Object>> entries() throws CircuitAbortException {
-		return new Iterator<Entry<Object, Object>>() {
-			private final Iterator<?> iterator = keys();
-
-			private boolean remove = false;
-			private Entry<Object, Object> entry = null;
-
-			@Override
-			public boolean hasNext() {
-				if (entry == null) {
-					try {
-						remove = false;
-
-						while ((entry == null) && iterator.hasNext()) {
-							Object key = iterator.next();
-
-							if (key != null) {
-								Object value = getCachedValue(key);
-
-								if (value != null) {
-									entry = new CacheEntry(CacheResource.this, key, value);
-								}
-							}
-						}
-					} catch (CircuitAbortException e) {
-						Trace.error("Unable iterate in Cache", e);
-					}
-				}
-
-				return entry != null;
-			}
-
+		return new BatchIterator<Entry<Object, Object>>() {
 			@Override
-			public Entry<Object, Object> next() {
-				if (!hasNext()) {
-					throw new NoSuchElementException();
-				}
-
-				try {
-					return entry;
-				} finally {
-					remove = true;
-					entry = null;
-				}
-			}
-
-			@Override
-			public void remove() {
-				if (!remove) {
-					throw new IllegalStateException("no previous value returned by 'next()'");
-				}
-
-				remove = false;
-				iterator.remove();
+			protected Entry<Object, Object> next(Entry<Object, Object> entry) {
+				return new CacheEntry(CacheResource.this, entry.getKey(), entry.getValue());
 			}
 		};
 	}
@@ -440,16 +849,81 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 				return resource.putCachedValue(key, serializable, ttl);
 			}
 
+			@Override
+			public Object putIfAbsent(Object key, Object serializable) throws CircuitAbortException {
+				return resource.putIfAbsent(key, serializable, ttl);
+			}
+
+			@Override
+			public Object putIfAbsent(Object key, Object serializable, int ttl) throws CircuitAbortException {
+				return resource.putIfAbsent(key, serializable, ttl);
+			}
+
+			@Override
+			public Object replaceCachedValue(Object key, Object serializable) throws CircuitAbortException {
+				return resource.replaceCachedValue(key, serializable, ttl);
+			}
+
+			@Override
+			public Object replaceCachedValue(Object key, Object serializable, int ttl) throws CircuitAbortException {
+				return resource.replaceCachedValue(key, serializable, ttl);
+			}
+
+			@Override
+			public boolean compareAndSet(Object key, Object expected, Object serializable) throws CircuitAbortException {
+				return resource.compareAndSet(key, expected, serializable, ttl);
+			}
+
+			@Override
+			public boolean compareAndSet(Object key, Object expected, Object serializable, int ttl) throws CircuitAbortException {
+				return resource.compareAndSet(key, expected, serializable, ttl);
+			}
+
 			@Override
 			public Object getCachedValue(Object key) throws CircuitAbortException {
 				return resource.getCachedValue(key);
 			}
 
+			@Override
+			public Object getOrLoad(Object key, CacheLoader loader) throws CircuitAbortException {
+				return resource.getOrLoad(key, loader, ttl);
+			}
+
+			@Override
+			public Object getOrLoad(Object key, CacheLoader loader, int ttl) throws CircuitAbortException {
+				return resource.getOrLoad(key, loader, ttl);
+			}
+
+			@Override
+			public Object getOrLoad(Object key, CacheLoader loader, int ttl, int refreshAhead) throws CircuitAbortException {
+				return resource.getOrLoad(key, loader, ttl, refreshAhead);
+			}
+
+			@Override
+			protected long getRemainingTime(Object key) throws CircuitAbortException {
+				return resource.getRemainingTime(key);
+			}
+
 			@Override
 			public boolean removeCacheEntry(Object key) throws CircuitAbortException {
 				return resource.removeCacheEntry(key);
 			}
 
+			@Override
+			public Map<Object, Object> getAll(Collection<?> keys) throws CircuitAbortException {
+				return resource.getAll(keys);
+			}
+
+			@Override
+			public void putAll(Map<?, ?> values, int ttl) throws CircuitAbortException {
+				resource.putAll(values, ttl);
+			}
+
+			@Override
+			public void removeAll(Collection<?> keys) throws CircuitAbortException {
+				resource.removeAll(keys);
+			}
+
 			@Override
 			public int getCacheSize() throws CircuitAbortException {
 				return resource.getCacheSize();
@@ -492,6 +966,78 @@ public abstract class CacheResource implements ContextResource, ViewableResource
 		};
 	}
 
+	/**
+	 * iterator which reads cache keys and retrieves mapped values by batches, so
+	 * neither the key set nor the values are fully materialized.
+	 *
+	 * @param <T> iterated element type
+	 */
+	private abstract class BatchIterator<T> implements Iterator<T> {
+		private final Iterator<?> iterator = keys();
+
+		private Iterator<Entry<Object, Object>> batch = Collections.emptyIterator();
+		private Object remove = null;
+
+		private BatchIterator() throws CircuitAbortException {
+		}
+
+		protected abstract T next(Entry<Object, Object> entry);
+
+		@Override
+		public boolean hasNext() {
+			try {
+				while ((!batch.hasNext()) && iterator.hasNext()) {
+					List<Object> keys = new ArrayList<Object>(ITERATION_BATCH_SIZE);
+
+					while ((keys.size() < ITERATION_BATCH_SIZE) && iterator.hasNext()) {
+						Object key = iterator.next();
+
+						if (key != null) {
+							keys.add(key);
+						}
+					}
+
+					/* expired or removed keys are not returned */
+					batch = getAll(keys).entrySet().iterator();
+				}
+			} catch (CircuitAbortException e) {
+				Trace.error("Unable iterate in Cache", e);
+
+				batch = Collections.emptyIterator();
+			}
+
+			return batch.hasNext();
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			Entry<Object, Object> entry = batch.next();
+
+			remove = entry.getKey();
+
+			return next(entry);
+		}
+
+		@Override
+		public void remove() {
+			if (remove == null) {
+				throw new IllegalStateException("no previous value returned by 'next()'");
+			}
+
+			try {
+				removeCacheEntry(remove);
+			} catch (CircuitAbortException e) {
+				Trace.error("Unable to remove cache key", e);
+			} finally {
+				remove = null;
+			}
+		}
+	}
+
 	public static class CacheEntry extends SimpleEntry<Object, Object> {
 		/**
 		 * 
@@ -0,0 +1,46 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Converts values to and from their cached representation. Cache resources use
+ * a codec to store values which are not natively serializable (like message
+ * bodies) and to control the size of stored values.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public interface CacheValueCodec {
+	/**
+	 * Java serialization codec. {@link com.vordel.mime.Body} values are wrapped
+	 * using the gateway body serializer. This is the default codec since stored
+	 * values can be read by gateway cache filters.
+	 */
+	public static final CacheValueCodec SERIALIZED = new SerializedCacheValueCodec();
+
+	/**
+	 * Compact binary codec for common types, falling back to Java serialization
+	 * for other values. This codec is able to decode values stored by the
+	 * {@link #SERIALIZED} codec.
+	 */
+	public static final CacheValueCodec BINARY = new BinaryCacheValueCodec();
+
+	/**
+	 * encode a value for storage in cache
+	 *
+	 * @param value value to be encoded (not null)
+	 * @return cache representation of the value or <code>null</code> if the value
+	 *         can't be encoded
+	 * @throws IOException if an encoding error occurs
+	 */
+	public Serializable encode(Object value) throws IOException;
+
+	/**
+	 * decode a value retrieved from cache
+	 *
+	 * @param stored cache representation of the value
+	 * @return decoded value
+	 * @throws IOException if a decoding error occurs
+	 */
+	public Object decode(Object stored) throws IOException;
+}
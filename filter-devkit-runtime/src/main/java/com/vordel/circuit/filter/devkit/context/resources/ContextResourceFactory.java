@@ -61,6 +61,8 @@ public class ContextResourceFactory {
 							Trace.error(String.format("Configured class '%s' does not exists", className), e);
 						}
 					}
+				} else if ("LOCAL_CACHE_RESOURCE".equals(resourceType)) {
+					resource = createLocalCacheResource(resourceEntity);
 				} else if ("CONFIGURATION_RESOURCE".equals(resourceType)) {
 					ESPK reference = resourceEntity.getReferenceValue("configurationReference");
 
@@ -96,6 +98,21 @@ public class ContextResourceFactory {
 		}
 	}
 
+	private static LocalCacheResource createLocalCacheResource(Entity resourceEntity) {
+		/* resources created with the version 1 type do not have local cache fields */
+		long maximum = resourceEntity.containsKey("localCacheMaximum") ? resourceEntity.getLongValue("localCacheMaximum") : 10000L;
+		int ttl = resourceEntity.containsKey("localCacheTimeToLive") ? resourceEntity.getIntegerValue("localCacheTimeToLive") : 0;
+		String weigher = resourceEntity.containsKey("localCacheWeigher") ? resourceEntity.getStringValue("localCacheWeigher") : "ENTRY_COUNT";
+
+		if ("ESTIMATED_SIZE".equals(weigher)) {
+			/* maximum is expressed in bytes */
+			return new LocalCacheResource(maximum, ttl, LocalCacheResource.ESTIMATED_SIZE);
+		}
+
+		/* maximum is expressed in entries */
+		return new LocalCacheResource(maximum, ttl);
+	}
+
 	public static void releaseResources(Map<String, ContextResource> resources) {
 		if (resources != null) {
 			Iterator<ContextResource> iterator = resources.values().iterator();
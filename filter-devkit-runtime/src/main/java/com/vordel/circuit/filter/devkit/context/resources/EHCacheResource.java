@@ -2,13 +2,18 @@ package com.vordel.circuit.filter.devkit.context.resources;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import com.vordel.circuit.CircuitAbortException;
-import com.vordel.circuit.cache.BodySerializer;
 import com.vordel.circuit.cache.CacheContainer;
 import com.vordel.config.ConfigContext;
 import com.vordel.es.ESPK;
@@ -16,15 +21,22 @@ import com.vordel.es.Entity;
 import com.vordel.es.EntityStore;
 import com.vordel.es.EntityStoreException;
 import com.vordel.es.xes.PortableESPK;
-import com.vordel.mime.Body;
 import com.vordel.trace.Trace;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.Status;
 import net.sf.ehcache.config.CacheConfiguration;
 
 public class EHCacheResource extends CacheResource {
 	private final String cacheName;
+	private final CacheValueCodec codec;
+
+	/**
+	 * resolved cache handle. Replaced when the referenced cache is no longer alive
+	 * (cache container redeployed or refreshed).
+	 */
+	private volatile Cache cache = null;
 
 	public EHCacheResource(ConfigContext ctx, Entity entity, String reference) throws EntityStoreException {
 		this(ctx, entity.getReferenceValue(reference));
@@ -34,8 +46,27 @@ public class EHCacheResource extends CacheResource {
 		this(getCacheName(ctx, cacheToUse));
 	}
 
+	public EHCacheResource(ConfigContext ctx, ESPK cacheToUse, CacheValueCodec codec) throws EntityStoreException {
+		this(getCacheName(ctx, cacheToUse), codec);
+	}
+
 	public EHCacheResource(String cacheName) {
+		this(cacheName, CacheValueCodec.SERIALIZED);
+	}
+
+	/**
+	 * create a cache resource using a specific value codec.
+	 * 
+	 * @param cacheName configured cache name
+	 * @param codec     codec used to store and retrieve cached values
+	 */
+	public EHCacheResource(String cacheName, CacheValueCodec codec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("cache value codec cannot be null");
+		}
+
 		this.cacheName = cacheName;
+		this.codec = codec;
 	}
 
 	private static String getCacheName(ConfigContext ctx, ESPK cacheToUse) {
@@ -57,9 +88,28 @@ public class EHCacheResource extends CacheResource {
 		return cache;
 	}
 
+	/**
+	 * retrieve the cache handle for this resource. The handle is resolved from the
+	 * cache container once and kept until the underlying cache is disposed, which
+	 * happens when the container is redeployed or refreshed.
+	 * 
+	 * @return alive cache handle
+	 * @throws CircuitAbortException if the cache can't be found
+	 */
+	private Cache getCache() throws CircuitAbortException {
+		Cache cache = this.cache;
+
+		if ((cache == null) || (cache.getStatus() != Status.STATUS_ALIVE)) {
+			/* concurrent resolutions will retrieve the same instance */
+			this.cache = cache = getCache(cacheName);
+		}
+
+		return cache;
+	}
+
 	@Override
 	public boolean isKeyInCache(Object key) throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 
 		return (cache != null) && cache.isKeyInCache(key);
 	}
@@ -67,7 +117,7 @@ public class EHCacheResource extends CacheResource {
 	@Override
 	public boolean isValueInCache(Object value) throws CircuitAbortException {
 		try {
-			Cache cache = getCache(cacheName);
+			Cache cache = getCache();
 
 			return (cache != null) && cache.isValueInCache(asSerializable(value));
 		} catch (IOException e) {
@@ -80,54 +130,108 @@ public class EHCacheResource extends CacheResource {
 		if ((value == null) || (ttl < 0)) {
 			removeCacheEntry(key);
 		} else {
-			Cache cache = getCache(cacheName);
+			Cache cache = getCache();
 
 			if (cache != null) {
-				boolean exists = cache.isKeyInCache(key);
-				Element element = null;
+				Element element = asElement(key, value, ttl);
 
-				if ((!exists) && !isCacheWriteable()) {
-					if (Trace.isDebugEnabled()) {
-						String msg = String.format("Not adding key '%s'  to cache, disk persistence is on and the maximum elements has been reached", String.valueOf(key));
+				if (isCacheWriteable(cache)) {
+					/* unconditional put, single cache operation */
+					cache.put(element);
+				} else if ((cache.replace(element) == null) && Trace.isDebugEnabled()) {
+					/* only existing mappings can be updated */
+					String msg = String.format("Not adding key '%s'  to cache, disk persistence is on and the maximum elements has been reached", String.valueOf(key));
 
-						Trace.debug(msg);
-					}
-				} else {
-					Serializable serializable = null;
+					Trace.debug(msg);
+				}
+			}
+		}
+	}
 
-					try {
-						serializable = asSerializable(value);
-					} catch (IOException e) {
-						throw new CircuitAbortException("Unable to serialize value", e);
-					}
+	@Override
+	public Object putIfAbsent(Object key, Object value, int ttl) throws CircuitAbortException {
+		Object existing = null;
 
-					if (serializable instanceof Serializable) {
-						element = new Element(key, serializable);
+		if ((value == null) || (ttl < 0)) {
+			existing = getCachedValue(key);
+		} else {
+			Cache cache = getCache();
 
-						if (ttl > 0) {
-							element.setTimeToLive(ttl);
-						}
+			if (cache != null) {
+				try {
+					if (isCacheWriteable(cache)) {
+						existing = asObject(cache.putIfAbsent(asElement(key, value, ttl)));
+					} else {
+						if (Trace.isDebugEnabled()) {
+							String msg = String.format("Not adding key '%s'  to cache, disk persistence is on and the maximum elements has been reached", String.valueOf(key));
 
-						if (exists) {
-							cache.replace(element);
-						} else {
-							cache.put(element);
+							Trace.debug(msg);
 						}
-					} else {
-						String className = value != null ? value.getClass().getSimpleName() : "null";
-						String msg = String.format("Trying to cache object that does not implement java.io.Serializable: %s", className);
 
-						throw new CircuitAbortException(msg);
+						existing = asObject(cache.get(key));
 					}
+				} catch (IOException e) {
+					throw new CircuitAbortException("Unexpected I/O Exception", e);
+				}
+			}
+		}
+
+		return existing;
+	}
+
+	@Override
+	public Object replaceCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
+		Cache cache = getCache();
+		Object existing = null;
+
+		if (cache != null) {
+			try {
+				if ((value == null) || (ttl < 0)) {
+					existing = asObject(cache.removeAndReturnElement(key));
+				} else {
+					existing = asObject(cache.replace(asElement(key, value, ttl)));
+				}
+			} catch (IOException e) {
+				throw new CircuitAbortException("Unexpected I/O Exception", e);
+			}
+		}
+
+		return existing;
+	}
+
+	@Override
+	public boolean compareAndSet(Object key, Object expected, Object value, int ttl) throws CircuitAbortException {
+		Cache cache = getCache();
+		boolean updated = false;
+
+		if (cache != null) {
+			boolean remove = (value == null) || (ttl < 0);
+
+			if (expected == null) {
+				if (remove) {
+					updated = !cache.isKeyInCache(key);
+				} else if (isCacheWriteable(cache)) {
+					updated = cache.putIfAbsent(asElement(key, value, ttl)) == null;
+				}
+			} else {
+				/* value comparison is delegated to the cache element comparator */
+				Element old = asElement(key, expected, 0);
+
+				if (remove) {
+					updated = cache.removeElement(old);
+				} else {
+					updated = cache.replace(old, asElement(key, value, ttl));
 				}
 			}
 		}
+
+		return updated;
 	}
 
 	@Override
 	public Object putCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
 		try {
-			Cache cache = getCache(cacheName);
+			Cache cache = getCache();
 			Element existing = null;
 
 			if (cache != null) {
@@ -177,7 +281,7 @@ public class EHCacheResource extends CacheResource {
 
 	@Override
 	public Object getCachedValue(Object key) throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 		Object value = null;
 
 		if (cache != null) {
@@ -197,9 +301,30 @@ public class EHCacheResource extends CacheResource {
 		return value;
 	}
 
+	@Override
+	protected long getRemainingTime(Object key) throws CircuitAbortException {
+		Cache cache = getCache();
+		long remaining = -1L;
+
+		if ((cache != null) && (key != null)) {
+			/* quiet access, do not update statistics or last access time */
+			Element element = cache.getQuiet(key);
+
+			if ((element != null) && (!element.isExpired())) {
+				long expiration = element.getExpirationTime();
+
+				if (expiration != Long.MAX_VALUE) {
+					remaining = Math.max(0L, expiration - System.currentTimeMillis());
+				}
+			}
+		}
+
+		return remaining;
+	}
+
 	@Override
 	public boolean removeCacheEntry(Object key) throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 		boolean result = false;
 
 		if (cache != null) {
@@ -217,19 +342,100 @@ public class EHCacheResource extends CacheResource {
 		return result;
 	}
 
+	@Override
+	public Map<Object, Object> getAll(Collection<?> keys) throws CircuitAbortException {
+		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+
+		if ((keys != null) && (!keys.isEmpty())) {
+			Cache cache = getCache();
+
+			if (cache != null) {
+				try {
+					/* single bulk lookup, missing keys are mapped to null elements */
+					for (Entry<Object, Element> entry : cache.getAll(keys).entrySet()) {
+						Object value = asObject(entry.getValue());
+
+						if (value != null) {
+							result.put(entry.getKey(), value);
+						}
+					}
+				} catch (IOException e) {
+					throw new CircuitAbortException("Unexpected I/O Exception", e);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public void putAll(Map<?, ?> values, int ttl) throws CircuitAbortException {
+		if ((values != null) && (!values.isEmpty())) {
+			Cache cache = getCache();
+
+			if (cache != null) {
+				List<Element> elements = new ArrayList<Element>(values.size());
+				Set<Object> removed = new HashSet<Object>();
+				boolean writeable = isCacheWriteable(cache);
+
+				for (Entry<?, ?> entry : values.entrySet()) {
+					Object key = entry.getKey();
+					Object value = entry.getValue();
+
+					if (key == null) {
+						/* ignore null keys */
+					} else if ((value == null) || (ttl < 0)) {
+						removed.add(key);
+					} else if ((!writeable) && (!cache.isKeyInCache(key))) {
+						if (Trace.isDebugEnabled()) {
+							String msg = String.format("Not adding key '%s'  to cache, disk persistence is on and the maximum elements has been reached", String.valueOf(key));
+
+							Trace.debug(msg);
+						}
+					} else {
+						elements.add(asElement(key, value, ttl));
+					}
+				}
+
+				if (!removed.isEmpty()) {
+					cache.removeAll(removed);
+				}
+
+				if (!elements.isEmpty()) {
+					cache.putAll(elements);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<?> keys) throws CircuitAbortException {
+		if ((keys != null) && (!keys.isEmpty())) {
+			Cache cache = getCache();
+
+			if (cache != null) {
+				try {
+					cache.removeAll(keys);
+				} catch (RuntimeException e) {
+					Trace.error("Error removing from cache", e);
+				}
+			}
+		}
+	}
+
 	@Override
 	public int getCacheSize() throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 
 		/*
-		 * use the fast variant
+		 * use store counters instead of key enumeration
 		 */
-		return cache == null ? 0 : getCacheSize(cache, false);
+		return cache == null ? 0 : cache.getSize();
 	}
 
 	@Override
 	public void clear() throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 
 		if (cache != null) {
 			cache.removeAll();
@@ -238,7 +444,7 @@ public class EHCacheResource extends CacheResource {
 
 	@Override
 	public Iterator<?> keys() throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 		Iterator<?> keys = null;
 
 		if (cache == null) {
@@ -253,7 +459,7 @@ public class EHCacheResource extends CacheResource {
 	}
 
 	private boolean isCacheWriteable() throws CircuitAbortException {
-		Cache cache = getCache(cacheName);
+		Cache cache = getCache();
 
 		return (cache != null) && isCacheWriteable(cache);
 	}
@@ -272,7 +478,7 @@ public class EHCacheResource extends CacheResource {
 				writeable = !configuration.isDiskPersistent();
 
 				if (!writeable) {
-					writeable = getCacheSize(cache, true) <= configuration.getMaxElementsOnDisk();
+					writeable = cache.getSize() <= configuration.getMaxElementsOnDisk();
 				}
 			}
 		}
@@ -280,37 +486,36 @@ public class EHCacheResource extends CacheResource {
 		return writeable;
 	}
 
-	private static int getCacheSize(Cache cache, boolean duplicateCheck) {
-		int size = 0;
-
-		if (cache != null) {
-			List<?> keys = duplicateCheck ? cache.getKeys() : cache.getKeysNoDuplicateCheck();
+	private Element asElement(Object key, Object value, int ttl) throws CircuitAbortException {
+		Serializable serializable = null;
 
-			size = keys == null ? 0 : keys.size();
+		try {
+			serializable = asSerializable(value);
+		} catch (IOException e) {
+			throw new CircuitAbortException("Unable to serialize value", e);
 		}
 
-		return size;
-	}
+		if (!(serializable instanceof Serializable)) {
+			String className = value != null ? value.getClass().getSimpleName() : "null";
+			String msg = String.format("Trying to cache object that does not implement java.io.Serializable: %s", className);
 
-	private static Serializable asSerializable(Object value) throws IOException {
-		if (value instanceof Body) {
-			value = new BodySerializer((Body) value);
+			throw new CircuitAbortException(msg);
 		}
 
-		return value instanceof Serializable ? (Serializable) value : null;
-	}
+		Element element = new Element(key, serializable);
 
-	private static Object asObject(Element element) throws IOException {
-		Object result = null;
+		if (ttl > 0) {
+			element.setTimeToLive(ttl);
+		}
 
-		if (element != null) {
-			result = element.getObjectValue();
+		return element;
+	}
 
-			if (result instanceof BodySerializer) {
-				result = ((BodySerializer) result).getAsBody();
-			}
-		}
+	private Serializable asSerializable(Object value) throws IOException {
+		return value == null ? null : codec.encode(value);
+	}
 
-		return result;
+	private Object asObject(Element element) throws IOException {
+		return element == null ? null : codec.decode(element.getObjectValue());
 	}
 }
@@ -0,0 +1,122 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+/**
+ * Count-Min sketch with 4-bit counters used to estimate access frequency of
+ * cache keys (TinyLFU admission policy). Counters are periodically halved so
+ * the sketch follows changes of the access pattern. This class is not thread
+ * safe, callers must provide their own locking.
+ *
+ * @author rdesaintleger@axway.com
+ */
+final class FrequencySketch {
+	private static final long[] SEED = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	/**
+	 * maximum number of table slots (128MB of counters), larger caches share
+	 * counters at the cost of precision
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 24;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+
+	private int size = 0;
+
+	/**
+	 * create a new sketch
+	 *
+	 * @param maximumSize expected maximum number of distinct keys
+	 */
+	FrequencySketch(long maximumSize) {
+		int capacity = (int) Math.min(Math.max(maximumSize, 8L), MAXIMUM_CAPACITY);
+
+		/* round to next power of two */
+		capacity = Integer.highestOneBit(capacity - 1) << 1;
+
+		this.table = new long[capacity];
+		this.tableMask = capacity - 1;
+		this.sampleSize = (int) Math.min(capacity * 10L, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param item element to be checked
+	 * @return estimated access frequency of the element (0 to 15)
+	 */
+	int frequency(Object item) {
+		int hash = spread(item.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+
+			frequency = Math.min(frequency, count);
+		}
+
+		return frequency;
+	}
+
+	/**
+	 * record an access to the given element.
+	 *
+	 * @param item accessed element
+	 */
+	void increment(Object item) {
+		int hash = spread(item.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+
+		if (added && (++size == sampleSize)) {
+			reset();
+		}
+	}
+
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xfL << offset;
+		boolean incremented = (table[index] & mask) != mask;
+
+		if (incremented) {
+			table[index] += 1L << offset;
+		}
+
+		return incremented;
+	}
+
+	/**
+	 * halve all counters (aging)
+	 */
+	private void reset() {
+		int count = 0;
+
+		for (int index = 0; index < table.length; index++) {
+			count += Long.bitCount(table[index] & ONE_MASK);
+			table[index] = (table[index] >>> 1) & RESET_MASK;
+		}
+
+		size = (size >>> 1) - (count >>> 2);
+	}
+
+	private int indexOf(int item, int i) {
+		long hash = (item + SEED[i]) * SEED[i];
+
+		hash += (hash >>> 32);
+
+		return ((int) hash) & tableMask;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+		return (x >>> 16) ^ x;
+	}
+}
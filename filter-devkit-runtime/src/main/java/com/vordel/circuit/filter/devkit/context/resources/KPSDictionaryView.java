@@ -1,40 +1,44 @@
 package com.vordel.circuit.filter.devkit.context.resources;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.vordel.common.Dictionary;
 import com.vordel.kps.ObjectNotFound;
 import com.vordel.kps.Store;
-import com.vordel.kps.query.KeyQuery;
 
 public class KPSDictionaryView implements Dictionary {
-	private final Store store;
+	private final KPSResource resource;
 	private final String[] keys;
 	private final String[] values;
 	private final int index;
 
 	public KPSDictionaryView(KPSResource resource) {
-		this(resource.getStore());
+		this(resource, getKeys(resource), null, 0);
 	}
 
 	public KPSDictionaryView(Store store) {
-		this(store, getKeys(store), null, 0);
+		this(new KPSStoreResource(store));
 	}
 
-	private static String[] getKeys(Store store) {
-		return store.getReadKey().toArray(new String[0]);
+	private static String[] getKeys(KPSResource resource) {
+		return resource.getReadKey().toArray(new String[0]);
 	}
 
-	private KPSDictionaryView(Store store, String[] keys, String[] values, int index) {
+	private KPSDictionaryView(KPSResource resource, String[] keys, String[] values, int index) {
 		if (values == null) {
 			values = new String[keys.length];
 			index = 0;
 		}
 
-		this.store = store;
+		this.resource = resource;
 		this.keys = keys;
 		this.values = values;
 		this.index = index;
@@ -48,7 +52,7 @@ public class KPSDictionaryView implements Dictionary {
 		values[index] = key;
 
 		if (next < values.length) {
-			result = new KPSDictionaryView(store, keys, values, next);
+			result = new KPSDictionaryView(resource, keys, values, next);
 		} else {
 			List<Pair<String, Object>> pairs = new ArrayList<Pair<String, Object>>();
 
@@ -56,10 +60,9 @@ public class KPSDictionaryView implements Dictionary {
 				pairs.add(Pair.of(keys[index], values[index]));
 			}
 
-			KeyQuery query = new KeyQuery(pairs);
-
 			try {
-				result = store.getCached(query);
+				/* go through resource, so wrappers (like near cache) are used */
+				result = resource.getCachedByReadKey(pairs);
 			} catch (ObjectNotFound e) {
 				/* ignore */
 			}
@@ -68,4 +71,52 @@ public class KPSDictionaryView implements Dictionary {
 		return result;
 	}
 
+	/**
+	 * retrieve entries for several values of the next read key field. On a
+	 * composite read key, values of previous fields are those already bound to this
+	 * view. This is not a bulk read: entries are retrieved using
+	 * {@link KPSResource#getAllByReadKey(Collection)}, which calls the store once
+	 * per distinct value.
+	 * 
+	 * @param requested values of the next read key field
+	 * @return map of found entries by value. For composite keys which are not
+	 *         fully bound, values are views on the next field.
+	 */
+	public Map<Object, Object> getAll(Collection<?> requested) {
+		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+
+		if (requested != null) {
+			if ((index + 1) < values.length) {
+				for (Object key : requested) {
+					if (key != null) {
+						String[] bound = Arrays.copyOf(values, values.length);
+
+						bound[index] = key.toString();
+						result.put(key, new KPSDictionaryView(resource, keys, bound, index + 1));
+					}
+				}
+			} else {
+				Map<List<Pair<String, Object>>, Object> queries = new LinkedHashMap<List<Pair<String, Object>>, Object>();
+
+				for (Object key : requested) {
+					if (key != null) {
+						List<Pair<String, Object>> pairs = new ArrayList<Pair<String, Object>>();
+
+						for (int field = 0; field < index; field++) {
+							pairs.add(Pair.of(keys[field], values[field]));
+						}
+
+						pairs.add(Pair.of(keys[index], key.toString()));
+						queries.put(pairs, key);
+					}
+				}
+
+				for (Entry<List<Pair<String, Object>>, Map<String, Object>> entry : resource.getAllByReadKey(queries.keySet()).entrySet()) {
+					result.put(queries.get(entry.getKey()), entry.getValue());
+				}
+			}
+		}
+
+		return result;
+	}
 }
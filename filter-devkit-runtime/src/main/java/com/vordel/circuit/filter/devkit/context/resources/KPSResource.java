@@ -1,8 +1,12 @@
 package com.vordel.circuit.filter.devkit.context.resources;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -39,6 +43,74 @@ public abstract class KPSResource implements ContextResource, ViewableResource {
 		return store.getCached(id);
 	}
 
+	/**
+	 * retrieve a cached entry using read key values. This is the lookup used by
+	 * the dictionary view of this resource.
+	 * 
+	 * @param pairs read key field names and values
+	 * @return cached entry
+	 * @throws ObjectNotFound if no entry matches the given values
+	 */
+	public Map<String, Object> getCachedByReadKey(List<Pair<String, Object>> pairs) throws ObjectNotFound {
+		return getCached(new KeyQuery(pairs));
+	}
+
+	/**
+	 * retrieve cached entries for the given primary key values. This is not a bulk
+	 * read: the store is called once per distinct key. Duplicate keys are looked up
+	 * once and missing entries are not present in the result.
+	 * 
+	 * @param ids primary key values
+	 * @return map of found entries by primary key value
+	 */
+	public Map<Object, Map<String, Object>> getAll(Collection<?> ids) {
+		Map<Object, Map<String, Object>> result = new LinkedHashMap<Object, Map<String, Object>>();
+
+		if (ids != null) {
+			Set<Object> missing = new HashSet<Object>();
+
+			for (Object id : ids) {
+				if ((id != null) && (!result.containsKey(id)) && (!missing.contains(id))) {
+					try {
+						result.put(id, getCached(id));
+					} catch (ObjectNotFound e) {
+						missing.add(id);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * retrieve cached entries for several read key values. This is not a bulk read:
+	 * the store is called once per distinct query. Duplicate values are looked up
+	 * once and missing entries are not present in the result.
+	 * 
+	 * @param queries read key field names and values for each entry
+	 * @return map of found entries by read key values
+	 */
+	public Map<List<Pair<String, Object>>, Map<String, Object>> getAllByReadKey(Collection<List<Pair<String, Object>>> queries) {
+		Map<List<Pair<String, Object>>, Map<String, Object>> result = new LinkedHashMap<List<Pair<String, Object>>, Map<String, Object>>();
+
+		if (queries != null) {
+			Set<List<Pair<String, Object>>> missing = new HashSet<List<Pair<String, Object>>>();
+
+			for (List<Pair<String, Object>> pairs : queries) {
+				if ((pairs != null) && (!result.containsKey(pairs)) && (!missing.contains(pairs))) {
+					try {
+						result.put(pairs, getCachedByReadKey(pairs));
+					} catch (ObjectNotFound e) {
+						missing.add(pairs);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
 	public Map<String, Object> getEntry(Object key) throws ObjectNotFound {
 		Store store = getStore();
 		Transaction transaction = store.beginTransaction();
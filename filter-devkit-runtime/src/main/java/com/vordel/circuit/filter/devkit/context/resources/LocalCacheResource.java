@@ -0,0 +1,293 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.vordel.circuit.CircuitAbortException;
+import com.vordel.circuit.filter.devkit.context.resources.WindowTinyLfuCache.Weigher;
+
+/**
+ * In-heap cache resource backed by a {@link WindowTinyLfuCache}. Values are
+ * kept as is (no serialization), so this resource is suitable for parsed JSON,
+ * compiled templates or keys. Cached values are shared between callers and must
+ * not be modified. This cache is local to the gateway instance.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class LocalCacheResource extends CacheResource implements Closeable {
+	/**
+	 * weigher which estimates retained size in bytes of common value types
+	 */
+	public static final Weigher<Object, Object> ESTIMATED_SIZE = new Weigher<Object, Object>() {
+		@Override
+		public int weigh(Object key, Object value) {
+			long weight = 32L + estimate(key) + estimate(value);
+
+			return (int) Math.min(weight, Integer.MAX_VALUE);
+		}
+	};
+
+	/**
+	 * maximum nesting level walked when estimating value sizes
+	 */
+	private static final int MAX_ESTIMATE_DEPTH = 32;
+
+	private final WindowTinyLfuCache<Object, Object> cache;
+	private final int defaultTTL;
+
+	/**
+	 * create a local cache bounded by entry count
+	 *
+	 * @param maximumSize maximum number of entries
+	 * @param defaultTTL  default time to live in seconds (0 for no expiration)
+	 */
+	public LocalCacheResource(long maximumSize, int defaultTTL) {
+		this(maximumSize, defaultTTL, Weigher.SINGLETON);
+	}
+
+	/**
+	 * create a local cache bounded by weight
+	 *
+	 * @param maximumWeight maximum total weight of entries
+	 * @param defaultTTL    default time to live in seconds (0 for no expiration)
+	 * @param weigher       weigher used to compute entry weights (see
+	 *                      {@link #ESTIMATED_SIZE})
+	 */
+	public LocalCacheResource(long maximumWeight, int defaultTTL, Weigher<Object, Object> weigher) {
+		this.cache = new WindowTinyLfuCache<Object, Object>(maximumWeight, weigher);
+		this.defaultTTL = Math.max(defaultTTL, 0);
+	}
+
+	/**
+	 * @return underlying cache (for statistics)
+	 */
+	public WindowTinyLfuCache<Object, Object> getCache() {
+		return cache;
+	}
+
+	private long toMillis(int ttl) {
+		return (ttl == 0 ? defaultTTL : ttl) * 1000L;
+	}
+
+	@Override
+	public boolean isKeyInCache(Object key) throws CircuitAbortException {
+		return (key != null) && cache.containsKey(key);
+	}
+
+	@Override
+	public boolean isValueInCache(Object value) throws CircuitAbortException {
+		boolean found = false;
+
+		if (value != null) {
+			Iterator<Object> iterator = cache.values();
+
+			while ((!found) && iterator.hasNext()) {
+				found = value.equals(iterator.next());
+			}
+		}
+
+		return found;
+	}
+
+	@Override
+	public void setCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
+		putCachedValue(key, value, ttl);
+	}
+
+	@Override
+	public Object putCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
+		Object previous = null;
+
+		if (key != null) {
+			if ((value == null) || (ttl < 0)) {
+				previous = cache.remove(key);
+			} else {
+				previous = cache.put(key, value, toMillis(ttl));
+			}
+		}
+
+		return previous;
+	}
+
+	@Override
+	public Object putIfAbsent(Object key, Object value, int ttl) throws CircuitAbortException {
+		Object existing = null;
+
+		if (key != null) {
+			if ((value == null) || (ttl < 0)) {
+				existing = cache.peek(key);
+			} else {
+				existing = cache.putIfAbsent(key, value, toMillis(ttl));
+			}
+		}
+
+		return existing;
+	}
+
+	@Override
+	public Object replaceCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
+		Object existing = null;
+
+		if (key != null) {
+			if ((value == null) || (ttl < 0)) {
+				existing = cache.remove(key);
+			} else {
+				existing = cache.replace(key, value, toMillis(ttl));
+			}
+		}
+
+		return existing;
+	}
+
+	@Override
+	public boolean compareAndSet(Object key, Object expected, Object value, int ttl) throws CircuitAbortException {
+		boolean updated = false;
+
+		if (key != null) {
+			boolean remove = (value == null) || (ttl < 0);
+
+			if (expected == null) {
+				updated = remove ? !cache.containsKey(key) : cache.putIfAbsent(key, value, toMillis(ttl)) == null;
+			} else if (remove) {
+				updated = cache.remove(key, expected);
+			} else {
+				updated = cache.replace(key, expected, value, toMillis(ttl));
+			}
+		}
+
+		return updated;
+	}
+
+	@Override
+	public Object getCachedValue(Object key) throws CircuitAbortException {
+		return key == null ? null : cache.get(key);
+	}
+
+	@Override
+	public Map<Object, Object> getAll(Collection<?> keys) throws CircuitAbortException {
+		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+
+		if (keys != null) {
+			for (Object key : keys) {
+				Object value = key == null ? null : cache.get(key);
+
+				if (value != null) {
+					result.put(key, value);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	protected long getRemainingTime(Object key) throws CircuitAbortException {
+		return key == null ? -1L : cache.getRemainingTime(key);
+	}
+
+	@Override
+	public boolean removeCacheEntry(Object key) throws CircuitAbortException {
+		return (key != null) && (cache.remove(key) != null);
+	}
+
+	@Override
+	public int getCacheSize() throws CircuitAbortException {
+		return cache.size();
+	}
+
+	@Override
+	public void clear() throws CircuitAbortException {
+		cache.clear();
+	}
+
+	@Override
+	public Iterator<?> keys() throws CircuitAbortException {
+		return cache.keys();
+	}
+
+	@Override
+	public void close() {
+		cache.clear();
+	}
+
+	private static long estimate(Object value) {
+		return estimate(value, 0, Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+	}
+
+	/**
+	 * estimate retained size of a value. Nested structures are walked up to
+	 * MAX_ESTIMATE_DEPTH levels and each container is counted once, so shared or
+	 * self referencing structures do not loop.
+	 *
+	 * @param value   value to be estimated
+	 * @param depth   current nesting level
+	 * @param visited containers already estimated
+	 * @return estimated size in bytes
+	 */
+	private static long estimate(Object value, int depth, Set<Object> visited) {
+		long size = 16L;
+
+		if ((depth > MAX_ESTIMATE_DEPTH) || (((value instanceof Map) || (value instanceof Collection) || (value instanceof ContainerNode)) && (!visited.add(value)))) {
+			/* too deep or already counted, count reference only */
+		} else if (value instanceof String) {
+			size += 24L + (((String) value).length() * 2L);
+		} else if (value instanceof byte[]) {
+			size += ((byte[]) value).length;
+		} else if (value instanceof char[]) {
+			size += ((char[]) value).length * 2L;
+		} else if (value instanceof CharSequence) {
+			size += ((CharSequence) value).length() * 2L;
+		} else if (value instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				size += 32L + estimate(entry.getKey(), depth + 1, visited) + estimate(entry.getValue(), depth + 1, visited);
+			}
+		} else if (value instanceof Collection) {
+			for (Object item : (Collection<?>) value) {
+				size += 8L + estimate(item, depth + 1, visited);
+			}
+		} else if (value instanceof JsonNode) {
+			size += estimate((JsonNode) value, depth, visited);
+		}
+
+		return size;
+	}
+
+	private static long estimate(JsonNode node, int depth, Set<Object> visited) {
+		long size = 0L;
+
+		if (node instanceof ObjectNode) {
+			/* object fields are kept in a linked hash map */
+			Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+
+				size += 48L + estimate(field.getKey(), depth + 1, visited) + estimate(field.getValue(), depth + 1, visited);
+			}
+		} else if (node instanceof ContainerNode) {
+			for (JsonNode item : node) {
+				size += 8L + estimate(item, depth + 1, visited);
+			}
+		} else if (node instanceof TextNode) {
+			size += 16L + estimate(node.textValue(), depth + 1, visited);
+		} else if (node instanceof BinaryNode) {
+			size += 16L + estimate(((BinaryNode) node).binaryValue(), depth + 1, visited);
+		} else {
+			/* numbers, booleans and null */
+			size += 16L;
+		}
+
+		return size;
+	}
+}
@@ -0,0 +1,346 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded per node cache with a short time to live. It is used in front
+ * of remote caches and KPS stores to avoid the full lookup path for hot keys.
+ * Entries are kept in least recently used order in independently locked
+ * segments. Hit, miss and eviction counters are maintained for monitoring.
+ *
+ * Since entries are read by concurrent requests, mutable values (maps, lists,
+ * JSON nodes, byte arrays...) are kept in binary encoded form (see
+ * {@link BinaryCacheValueCodec}) and each read returns a private copy. Strings,
+ * numbers, booleans and characters are kept as is. Values which can't be
+ * encoded are not cached. Sharing cached instances between callers can be
+ * enabled explicitly when cached values are never modified, which avoids the
+ * copy on each hit.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public final class NearCache {
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+	private final long ttlNanos;
+	private final boolean shared;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	/**
+	 * create a new near cache which returns private copies of mutable values
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param ttl     time to live of entries in milli-seconds
+	 */
+	public NearCache(int maxSize, long ttl) {
+		this(maxSize, ttl, false);
+	}
+
+	/**
+	 * create a new near cache
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param ttl     time to live of entries in milli-seconds
+	 * @param shared  'true' to return cached instances as is. In this case cached
+	 *                values are shared between requests and must not be modified
+	 */
+	public NearCache(int maxSize, long ttl, boolean shared) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("near cache size must be positive");
+		}
+
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("near cache ttl must be positive");
+		}
+
+		int count = Math.min(SEGMENTS, maxSize);
+		int capacity = (maxSize + count - 1) / count;
+
+		this.segments = new Segment[count];
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.shared = shared;
+
+		for (int index = 0; index < count; index++) {
+			segments[index] = new Segment(capacity);
+		}
+	}
+
+	private Segment segmentFor(Object key) {
+		int hash = key.hashCode();
+
+		/* spread hash bits before selecting segment */
+		hash ^= (hash >>> 16);
+
+		return segments[(hash & 0x7FFFFFFF) % segments.length];
+	}
+
+	/**
+	 * retrieve a value from the near cache.
+	 *
+	 * @param key key to be retrieved (not null)
+	 * @return cached value (or a private copy of it) or <code>null</code> if not
+	 *         present or expired
+	 */
+	public Object get(Object key) {
+		Segment segment = segmentFor(key);
+		long now = System.nanoTime();
+		Object value = null;
+
+		synchronized (segment) {
+			NearEntry entry = segment.get(key);
+
+			if (entry != null) {
+				if ((now - entry.expires) >= 0) {
+					segment.remove(key);
+					expirations.increment();
+				} else {
+					value = entry.value;
+				}
+			}
+		}
+
+		if (value instanceof CopiedValue) {
+			try {
+				value = BinaryCacheValueCodec.fromByteArray(((CopiedValue) value).data);
+			} catch (IOException e) {
+				/* should not happen, drop entry */
+				invalidate(key);
+
+				value = null;
+			}
+		}
+
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+
+		return value;
+	}
+
+	/**
+	 * put a value in the near cache. Null values and values which can't be copied
+	 * are ignored.
+	 *
+	 * @param key   key of value (not null)
+	 * @param value value to be cached
+	 */
+	public void put(Object key, Object value) {
+		NearEntry entry = createEntry(value);
+
+		if (entry != null) {
+			Segment segment = segmentFor(key);
+
+			synchronized (segment) {
+				segment.put(key, entry);
+			}
+		}
+	}
+
+	/**
+	 * retrieve the invalidation stamp of a key. The stamp must be taken before
+	 * reading the value from the backing store and given back to
+	 * {@link #put(Object, Object, long)}, so a value read concurrently with an
+	 * invalidation is not cached. Stamps are shared by all keys of a segment.
+	 *
+	 * @param key key to be read (not null)
+	 * @return current invalidation stamp of the key
+	 */
+	public long stamp(Object key) {
+		Segment segment = segmentFor(key);
+
+		synchronized (segment) {
+			return segment.invalidations;
+		}
+	}
+
+	/**
+	 * put a value read from the backing store in the near cache. The value is
+	 * ignored if the key may have been invalidated since the stamp was taken.
+	 *
+	 * @param key   key of value (not null)
+	 * @param value value to be cached
+	 * @param stamp invalidation stamp taken before the value was read (see
+	 *              {@link #stamp(Object)})
+	 * @return 'true' if the value has been cached
+	 */
+	public boolean put(Object key, Object value, long stamp) {
+		NearEntry entry = createEntry(value);
+		boolean cached = false;
+
+		if (entry != null) {
+			Segment segment = segmentFor(key);
+
+			synchronized (segment) {
+				/* skip insert if an invalidation occurred during the read */
+				cached = segment.invalidations == stamp;
+
+				if (cached) {
+					segment.put(key, entry);
+				}
+			}
+		}
+
+		return cached;
+	}
+
+	private NearEntry createEntry(Object value) {
+		if ((value != null) && (!shared) && (!isImmutable(value))) {
+			try {
+				value = new CopiedValue(BinaryCacheValueCodec.toByteArray(value));
+			} catch (IOException e) {
+				/* value can't be copied, do not cache it */
+				value = null;
+			}
+		}
+
+		return value == null ? null : new NearEntry(value, System.nanoTime() + ttlNanos);
+	}
+
+	/**
+	 * invalidation hook for a single key
+	 *
+	 * @param key key to be removed from the near cache
+	 */
+	public void invalidate(Object key) {
+		if (key != null) {
+			Segment segment = segmentFor(key);
+
+			synchronized (segment) {
+				segment.remove(key);
+				segment.invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * invalidation hook for all keys
+	 */
+	public void invalidateAll() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+				segment.invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * @return current number of entries (including expired entries not yet
+	 *         removed)
+	 */
+	public int size() {
+		int size = 0;
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return number of entries removed because the near cache was full
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return number of entries removed because their time to live was reached
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+
+	/**
+	 * @return ratio of lookups served by the near cache (0 if no lookup occurred)
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount();
+		long requests = hits + getMissCount();
+
+		return requests == 0 ? 0.0 : ((double) hits) / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("NearCache[size=%d, hits=%d, misses=%d, evictions=%d, expirations=%d]", size(), getHitCount(), getMissCount(), getEvictionCount(), getExpirationCount());
+	}
+
+	private static boolean isImmutable(Object value) {
+		Class<?> clazz = value.getClass();
+
+		return (clazz == String.class) || (clazz == Boolean.class) || (clazz == Character.class) || (clazz == Byte.class) || (clazz == Short.class) || (clazz == Integer.class) || (clazz == Long.class) || (clazz == Float.class) || (clazz == Double.class) || (clazz == BigInteger.class) || (clazz == BigDecimal.class);
+	}
+
+	/**
+	 * binary encoded form of a mutable value
+	 */
+	private static final class CopiedValue {
+		private final byte[] data;
+
+		private CopiedValue(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	private static final class NearEntry {
+		private final Object value;
+		private final long expires;
+
+		private NearEntry(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	private final class Segment extends LinkedHashMap<Object, NearEntry> {
+		private static final long serialVersionUID = -6184379046358117253L;
+
+		private final int capacity;
+
+		/**
+		 * number of invalidations in this segment (guarded by segment lock)
+		 */
+		private long invalidations = 0L;
+
+		private Segment(int capacity) {
+			super(16, 0.75f, true);
+
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, NearEntry> eldest) {
+			boolean evict = size() > capacity;
+
+			if (evict) {
+				evictions.increment();
+			}
+
+			return evict;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.vordel.kps.ObjectExists;
+import com.vordel.kps.ObjectNotFound;
+import com.vordel.kps.Store;
+import com.vordel.kps.query.KeyQuery;
+
+/**
+ * KPS resource with a per node near cache in front of another KPS resource.
+ * Cached lookups by primary key and by read key values (including lookups made
+ * through {@link KPSDictionaryView}) are served from the near cache when
+ * possible. Transactional reads are never cached. Writes made through this
+ * resource invalidate the whole near cache since updated entries may be
+ * reachable using several keys. Entries read while a write is in progress are
+ * not kept in the near cache. Changes made by other nodes are visible once the
+ * near cache entry expires, so the near cache time to live must be kept short.
+ * Each near cache hit returns a private copy of the entry (see
+ * {@link NearCache}) unless sharing has been enabled explicitly.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class NearCacheKPSResource extends KPSResource {
+	private final KPSResource resource;
+	private final NearCache near;
+
+	/**
+	 * wraps a KPS resource with a near cache
+	 *
+	 * @param resource wrapped KPS resource
+	 * @param maxSize  maximum number of entries in the near cache
+	 * @param ttl      near cache time to live in milli-seconds
+	 */
+	public NearCacheKPSResource(KPSResource resource, int maxSize, long ttl) {
+		this(resource, new NearCache(maxSize, ttl));
+	}
+
+	public NearCacheKPSResource(KPSResource resource, NearCache near) {
+		if (resource == null) {
+			throw new IllegalArgumentException("wrapped KPS resource cannot be null");
+		}
+
+		this.resource = resource;
+		this.near = near;
+	}
+
+	/**
+	 * @return near cache used by this resource (for invalidation and statistics)
+	 */
+	public NearCache getNearCache() {
+		return near;
+	}
+
+	@Override
+	public Store getStore() {
+		return resource.getStore();
+	}
+
+	@Override
+	public String getPrimaryKey() {
+		return resource.getPrimaryKey();
+	}
+
+	@Override
+	public List<String> getReadKey() {
+		return resource.getReadKey();
+	}
+
+	@Override
+	public Map<String, Object> getCached(KeyQuery query) throws ObjectNotFound {
+		/* queries can't be used as near cache keys */
+		return resource.getCached(query);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> getCached(Object id) throws ObjectNotFound {
+		LookupKey key = new LookupKey(true, id);
+		Map<String, Object> entry = (Map<String, Object>) near.get(key);
+
+		if (entry == null) {
+			long stamp = near.stamp(key);
+
+			entry = resource.getCached(id);
+
+			near.put(key, copy(entry), stamp);
+		}
+
+		return entry;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> getCachedByReadKey(List<Pair<String, Object>> pairs) throws ObjectNotFound {
+		/* copy pairs, caller may reuse its list */
+		pairs = new ArrayList<Pair<String, Object>>(pairs);
+
+		LookupKey key = new LookupKey(false, pairs);
+		Map<String, Object> entry = (Map<String, Object>) near.get(key);
+
+		if (entry == null) {
+			long stamp = near.stamp(key);
+
+			entry = resource.getCachedByReadKey(pairs);
+
+			near.put(key, copy(entry), stamp);
+		}
+
+		return entry;
+	}
+
+	@Override
+	public Map<String, Object> getEntry(Object key) throws ObjectNotFound {
+		return resource.getEntry(key);
+	}
+
+	@Override
+	public Map<String, Object> createEntry(Map<String, Object> entry) throws ObjectExists {
+		try {
+			return resource.createEntry(entry);
+		} finally {
+			near.invalidateAll();
+		}
+	}
+
+	@Override
+	public Map<String, Object> createEntry(Map<String, Object> entry, int ttl) throws ObjectExists {
+		try {
+			return resource.createEntry(entry, ttl);
+		} finally {
+			near.invalidateAll();
+		}
+	}
+
+	@Override
+	public Map<String, Object> updateEntry(Map<String, Object> entry) throws ObjectNotFound, ObjectExists {
+		try {
+			return resource.updateEntry(entry);
+		} finally {
+			near.invalidateAll();
+		}
+	}
+
+	@Override
+	public Map<String, Object> updateEntry(Map<String, Object> entry, int ttl) throws ObjectNotFound, ObjectExists {
+		try {
+			return resource.updateEntry(entry, ttl);
+		} finally {
+			near.invalidateAll();
+		}
+	}
+
+	@Override
+	public void removeEntry(Object key) throws ObjectNotFound {
+		try {
+			resource.removeEntry(key);
+		} finally {
+			near.invalidateAll();
+		}
+	}
+
+	/**
+	 * copy a store entry into a map type which can be encoded by the near cache
+	 */
+	private static Map<String, Object> copy(Map<String, Object> entry) {
+		return entry == null ? null : new LinkedHashMap<String, Object>(entry);
+	}
+
+	/**
+	 * near cache key, distinguish primary key lookups from read key lookups
+	 */
+	private static final class LookupKey {
+		private final boolean primary;
+		private final Object value;
+
+		private LookupKey(boolean primary, Object value) {
+			this.primary = primary;
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = value == null ? 0 : value.hashCode();
+
+			return primary ? hash : ~hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			boolean equals = obj == this;
+
+			if ((!equals) && (obj instanceof LookupKey)) {
+				LookupKey other = (LookupKey) obj;
+
+				equals = (primary == other.primary) && (value == null ? other.value == null : value.equals(other.value));
+			}
+
+			return equals;
+		}
+	}
+}
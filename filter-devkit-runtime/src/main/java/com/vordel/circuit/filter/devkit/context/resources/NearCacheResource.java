@@ -0,0 +1,278 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.vordel.circuit.CircuitAbortException;
+import com.vordel.mime.Body;
+
+/**
+ * Cache resource with a per node near cache in front of another cache resource
+ * (typically a distributed {@link EHCacheResource}). Reads are served from the
+ * near cache when possible, writes go through the wrapped resource and
+ * invalidate the local copy. Values read from the wrapped resource while a
+ * write invalidates the same key are returned but not kept in the near cache.
+ * Changes made by other nodes are visible once the near cache entry expires,
+ * so the near cache time to live must be kept short.
+ * Message bodies are never kept in the near cache since they can't be shared
+ * between requests. Other mutable values are copied by the near cache (see
+ * {@link NearCache}) unless sharing has been enabled explicitly.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class NearCacheResource extends CacheResource {
+	private final CacheResource resource;
+	private final NearCache near;
+
+	/**
+	 * wraps a cache resource with a near cache
+	 *
+	 * @param resource wrapped cache resource
+	 * @param maxSize  maximum number of entries in the near cache
+	 * @param ttl      near cache time to live in milli-seconds
+	 */
+	public NearCacheResource(CacheResource resource, int maxSize, long ttl) {
+		this(resource, new NearCache(maxSize, ttl));
+	}
+
+	public NearCacheResource(CacheResource resource, NearCache near) {
+		if (resource == null) {
+			throw new IllegalArgumentException("wrapped cache resource cannot be null");
+		}
+
+		this.resource = resource;
+		this.near = near;
+	}
+
+	/**
+	 * @return near cache used by this resource (for invalidation and statistics)
+	 */
+	public NearCache getNearCache() {
+		return near;
+	}
+
+	private Object cache(Object key, Object value, long stamp) {
+		if ((key != null) && (!(value instanceof Body))) {
+			near.put(key, value, stamp);
+		}
+
+		return value;
+	}
+
+	@Override
+	public boolean isKeyInCache(Object key) throws CircuitAbortException {
+		return ((key != null) && (near.get(key) != null)) || resource.isKeyInCache(key);
+	}
+
+	@Override
+	public boolean isValueInCache(Object value) throws CircuitAbortException {
+		return resource.isValueInCache(value);
+	}
+
+	@Override
+	public Object getCachedValue(Object key) throws CircuitAbortException {
+		Object value = key == null ? null : near.get(key);
+
+		if (value == null) {
+			long stamp = key == null ? 0L : near.stamp(key);
+
+			value = cache(key, resource.getCachedValue(key), stamp);
+		}
+
+		return value;
+	}
+
+	@Override
+	public Map<Object, Object> getAll(Collection<?> keys) throws CircuitAbortException {
+		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+
+		if (keys != null) {
+			/* invalidation stamps of keys to be read from the wrapped resource */
+			Map<Object, Long> missing = new LinkedHashMap<Object, Long>();
+
+			for (Object key : keys) {
+				Object value = key == null ? null : near.get(key);
+
+				if (value != null) {
+					result.put(key, value);
+				} else if (key != null) {
+					missing.put(key, near.stamp(key));
+				}
+			}
+
+			if (!missing.isEmpty()) {
+				for (Entry<Object, Object> entry : resource.getAll(missing.keySet()).entrySet()) {
+					Long stamp = missing.get(entry.getKey());
+					Object value = entry.getValue();
+
+					result.put(entry.getKey(), stamp == null ? value : cache(entry.getKey(), value, stamp));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public void setCachedValue(Object key, Object serializable) throws CircuitAbortException {
+		try {
+			resource.setCachedValue(key, serializable);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public void setCachedValue(Object key, Object serializable, int ttl) throws CircuitAbortException {
+		try {
+			resource.setCachedValue(key, serializable, ttl);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public Object putCachedValue(Object key, Object serializable) throws CircuitAbortException {
+		try {
+			return resource.putCachedValue(key, serializable);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public Object putCachedValue(Object key, Object serializable, int ttl) throws CircuitAbortException {
+		try {
+			return resource.putCachedValue(key, serializable, ttl);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public Object putIfAbsent(Object key, Object serializable) throws CircuitAbortException {
+		try {
+			return resource.putIfAbsent(key, serializable);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public Object putIfAbsent(Object key, Object serializable, int ttl) throws CircuitAbortException {
+		try {
+			return resource.putIfAbsent(key, serializable, ttl);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public Object replaceCachedValue(Object key, Object serializable) throws CircuitAbortException {
+		try {
+			return resource.replaceCachedValue(key, serializable);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public Object replaceCachedValue(Object key, Object serializable, int ttl) throws CircuitAbortException {
+		try {
+			return resource.replaceCachedValue(key, serializable, ttl);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public boolean compareAndSet(Object key, Object expected, Object serializable) throws CircuitAbortException {
+		try {
+			return resource.compareAndSet(key, expected, serializable);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public boolean compareAndSet(Object key, Object expected, Object serializable, int ttl) throws CircuitAbortException {
+		try {
+			return resource.compareAndSet(key, expected, serializable, ttl);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public void putAll(Map<?, ?> values, int ttl) throws CircuitAbortException {
+		try {
+			resource.putAll(values, ttl);
+		} finally {
+			if (values != null) {
+				for (Object key : values.keySet()) {
+					near.invalidate(key);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean removeCacheEntry(Object key) throws CircuitAbortException {
+		try {
+			return resource.removeCacheEntry(key);
+		} finally {
+			near.invalidate(key);
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<?> keys) throws CircuitAbortException {
+		try {
+			resource.removeAll(keys);
+		} finally {
+			if (keys != null) {
+				for (Object key : keys) {
+					near.invalidate(key);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int getCacheSize() throws CircuitAbortException {
+		return resource.getCacheSize();
+	}
+
+	@Override
+	public boolean isCacheEmpty() throws CircuitAbortException {
+		return resource.isCacheEmpty();
+	}
+
+	@Override
+	public void clear() throws CircuitAbortException {
+		try {
+			resource.clear();
+		} finally {
+			near.invalidateAll();
+		}
+	}
+
+	@Override
+	public int expireTTL(long millis) {
+		return resource.expireTTL(millis);
+	}
+
+	@Override
+	public int expireTTL(long exp, long time) {
+		return resource.expireTTL(exp, time);
+	}
+
+	@Override
+	public Iterator<?> keys() throws CircuitAbortException {
+		/* key removal must go through this resource to invalidate near cache */
+		return wrapKeyIterator(resource.keys());
+	}
+}
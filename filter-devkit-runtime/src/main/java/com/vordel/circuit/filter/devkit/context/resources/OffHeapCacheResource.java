@@ -0,0 +1,762 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.vordel.circuit.CircuitAbortException;
+import com.vordel.dwe.InputStreamContentSource;
+import com.vordel.mime.Body;
+import com.vordel.mime.ContentType;
+import com.vordel.mime.HeaderSet;
+import com.vordel.trace.Trace;
+
+/**
+ * Cache resource which stores values outside of the Java heap. Direct memory
+ * is allocated in slabs divided in fixed size blocks, a value uses a chain of
+ * blocks. The key index is kept on the heap in least recently used order, and
+ * least recently used entries are evicted when no block is available.
+ *
+ * Message bodies keep their headers and content type on the heap while their
+ * content is served back as a stream reading directly from the off-heap blocks.
+ * Blocks of an entry are recycled only when the entry is removed and all
+ * streams opened on it are fully read or closed (or garbage collected). Strings and byte
+ * arrays are copied back to the heap on read, other values are stored using
+ * the {@link BinaryCacheValueCodec} binary format. Previous values returned by
+ * put operations are copied on the heap (including bodies), so the replaced
+ * blocks are recycled immediately.
+ *
+ * This cache is local to the gateway instance.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class OffHeapCacheResource extends CacheResource implements Closeable {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int DEFAULT_BLOCK_SIZE = 8192;
+	private static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+	private static final byte KIND_BYTES = 1;
+	private static final byte KIND_STRING = 2;
+	private static final byte KIND_BODY = 3;
+	private static final byte KIND_ENCODED = 4;
+
+	private final int blockSize;
+	private final int blocksPerSlab;
+	private final int maxSlabs;
+	private final int defaultTTL;
+
+	/* fields below are guarded by index lock */
+	private final LinkedHashMap<Object, OffHeapEntry> index = new LinkedHashMap<Object, OffHeapEntry>(16, 0.75f, true);
+	/**
+	 * allocated slabs. The list is replaced when the cache is closed, so entries
+	 * keep a reference on the slabs they were written to.
+	 */
+	private volatile List<ByteBuffer> slabs = new CopyOnWriteArrayList<ByteBuffer>();
+	private final int[] freeBlocks;
+	private int freeCount = 0;
+	private long evictions = 0L;
+
+	/**
+	 * streams opened on cached bodies. Reference are kept until the stream is
+	 * fully read, closed or collected.
+	 */
+	private final Set<StreamReference> streams = new HashSet<StreamReference>();
+	private final ReferenceQueue<InputStream> released = new ReferenceQueue<InputStream>();
+
+	/**
+	 * create an off-heap cache with default block and slab sizes
+	 *
+	 * @param capacity   maximum off-heap memory in bytes
+	 * @param defaultTTL default time to live in seconds (0 for no expiration)
+	 */
+	public OffHeapCacheResource(long capacity, int defaultTTL) {
+		this(capacity, defaultTTL, DEFAULT_BLOCK_SIZE, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * create an off-heap cache
+	 *
+	 * @param capacity   maximum off-heap memory in bytes
+	 * @param defaultTTL default time to live in seconds (0 for no expiration)
+	 * @param blockSize  size of allocation blocks in bytes
+	 * @param slabSize   size of direct memory slabs in bytes
+	 */
+	public OffHeapCacheResource(long capacity, int defaultTTL, int blockSize, int slabSize) {
+		if ((blockSize <= 0) || (slabSize < blockSize)) {
+			throw new IllegalArgumentException("invalid block or slab size");
+		}
+
+		int blocksPerSlab = slabSize / blockSize;
+		long maxSlabs = capacity / ((long) blocksPerSlab * blockSize);
+
+		if (maxSlabs <= 0) {
+			throw new IllegalArgumentException("capacity must be larger than slab size");
+		}
+
+		if ((maxSlabs * blocksPerSlab) > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("capacity is too large for block size");
+		}
+
+		this.blockSize = blockSize;
+		this.blocksPerSlab = blocksPerSlab;
+		this.maxSlabs = (int) maxSlabs;
+		this.defaultTTL = Math.max(defaultTTL, 0);
+		this.freeBlocks = new int[this.maxSlabs * blocksPerSlab];
+	}
+
+	/**
+	 * @return number of entries evicted to reclaim memory
+	 */
+	public long getEvictionCount() {
+		synchronized (index) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * @return direct memory currently allocated by this cache in bytes
+	 */
+	public long getAllocatedMemory() {
+		synchronized (index) {
+			return ((long) slabs.size()) * blocksPerSlab * blockSize;
+		}
+	}
+
+	@Override
+	public boolean isKeyInCache(Object key) throws CircuitAbortException {
+		return getEntry(key, false) != null;
+	}
+
+	@Override
+	public boolean isValueInCache(Object value) throws CircuitAbortException {
+		boolean found = false;
+
+		if (value != null) {
+			Iterator<?> iterator = keys();
+
+			while ((!found) && iterator.hasNext()) {
+				found = value.equals(getCachedValue(iterator.next()));
+			}
+		}
+
+		return found;
+	}
+
+	@Override
+	public void setCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
+		OffHeapEntry previous = swap(key, value, ttl);
+
+		if (previous != null) {
+			synchronized (index) {
+				release(previous);
+			}
+		}
+	}
+
+	@Override
+	public Object putCachedValue(Object key, Object value, int ttl) throws CircuitAbortException {
+		OffHeapEntry previous = swap(key, value, ttl);
+
+		/* previous value is decoded from the swapped out entry, then its blocks are released */
+		return previous == null ? null : read(previous, true);
+	}
+
+	@Override
+	public Object getCachedValue(Object key) throws CircuitAbortException {
+		OffHeapEntry entry = getEntry(key, true);
+		Object value = null;
+
+		if (entry != null) {
+			/* entry is retained, it will be released by read() */
+			value = read(entry, false);
+		}
+
+		return value;
+	}
+
+	@Override
+	public boolean removeCacheEntry(Object key) throws CircuitAbortException {
+		OffHeapEntry entry = null;
+
+		if (key != null) {
+			synchronized (index) {
+				entry = index.remove(key);
+
+				release(entry);
+			}
+		}
+
+		return (entry != null) && (!entry.isExpired(System.nanoTime()));
+	}
+
+	@Override
+	public int getCacheSize() throws CircuitAbortException {
+		synchronized (index) {
+			return index.size();
+		}
+	}
+
+	@Override
+	public void clear() throws CircuitAbortException {
+		synchronized (index) {
+			Iterator<OffHeapEntry> iterator = index.values().iterator();
+
+			while (iterator.hasNext()) {
+				OffHeapEntry entry = iterator.next();
+
+				iterator.remove();
+				release(entry);
+			}
+		}
+	}
+
+	@Override
+	public Iterator<?> keys() throws CircuitAbortException {
+		List<Object> keys = null;
+
+		synchronized (index) {
+			keys = new ArrayList<Object>(index.keySet());
+		}
+
+		return wrapKeyIterator(keys.iterator());
+	}
+
+	@Override
+	public void close() {
+		synchronized (index) {
+			try {
+				clear();
+			} catch (CircuitAbortException e) {
+				/* not thrown by this implementation */
+			}
+
+			/*
+			 * direct memory is reclaimed when slabs are collected, remaining streams
+			 * keep their own slab references
+			 */
+			streams.clear();
+			slabs = new CopyOnWriteArrayList<ByteBuffer>();
+			freeCount = 0;
+		}
+	}
+
+	/**
+	 * replace the entry mapped by the given key. A value which can't be cached
+	 * removes the current mapping so stale values are not served.
+	 *
+	 * @param key   key of entry
+	 * @param value new value (<code>null</code> to remove mapping)
+	 * @param ttl   time to live of the new value
+	 * @return previous non expired entry, retained with the index reference, or
+	 *         <code>null</code>
+	 * @throws CircuitAbortException if the value can't be encoded
+	 */
+	private OffHeapEntry swap(Object key, Object value, int ttl) throws CircuitAbortException {
+		OffHeapEntry previous = null;
+
+		if (key != null) {
+			OffHeapEntry entry = (value == null) || (ttl < 0) ? null : write(key, value, ttl);
+
+			synchronized (index) {
+				expunge();
+
+				previous = entry == null ? index.remove(key) : index.put(key, entry);
+
+				if ((previous != null) && previous.isExpired(System.nanoTime())) {
+					release(previous);
+
+					previous = null;
+				}
+			}
+		}
+
+		return previous;
+	}
+
+	/**
+	 * retrieve a non expired entry.
+	 *
+	 * @param key    key of entry
+	 * @param retain 'true' if entry must be retained for reading
+	 * @return entry or <code>null</code> if not found
+	 */
+	private OffHeapEntry getEntry(Object key, boolean retain) {
+		OffHeapEntry entry = null;
+
+		if (key != null) {
+			synchronized (index) {
+				entry = index.get(key);
+
+				if ((entry != null) && entry.isExpired(System.nanoTime())) {
+					index.remove(key);
+					release(entry);
+
+					entry = null;
+				}
+
+				if (retain && (entry != null)) {
+					entry.references++;
+				}
+			}
+		}
+
+		return entry;
+	}
+
+	private OffHeapEntry write(Object key, Object value, int ttl) throws CircuitAbortException {
+		BlockOutputStream out = new BlockOutputStream();
+		String contentType = null;
+		String[] headers = null;
+		byte kind = 0;
+
+		try {
+			if (value instanceof byte[]) {
+				kind = KIND_BYTES;
+				out.write((byte[]) value);
+			} else if (value instanceof String) {
+				kind = KIND_STRING;
+				out.write(((String) value).getBytes(UTF_8));
+			} else if (value instanceof Body) {
+				Body body = (Body) value;
+				ContentType type = body.getContentType();
+
+				kind = KIND_BODY;
+				contentType = type == null ? null : type.toString();
+				headers = getHeaders(body.getHeaders());
+
+				/* body content is written directly in off-heap blocks */
+				body.write(out, Body.WRITE_NO_CTE);
+			} else {
+				kind = KIND_ENCODED;
+				out.write(BinaryCacheValueCodec.toByteArray(value));
+			}
+
+			out.close();
+		} catch (NotSerializableException e) {
+			out.discard();
+
+			String msg = String.format("Trying to cache object that does not implement java.io.Serializable: %s", value.getClass().getSimpleName());
+
+			throw new CircuitAbortException(msg);
+		} catch (CacheFullException e) {
+			out.discard();
+
+			if (Trace.isDebugEnabled()) {
+				Trace.debug(String.format("Not adding key '%s' to off-heap cache, value does not fit in available memory", String.valueOf(key)));
+			}
+
+			return null;
+		} catch (IOException e) {
+			out.discard();
+
+			throw new CircuitAbortException("Unable to write value in off-heap cache", e);
+		}
+
+		int seconds = ttl == 0 ? defaultTTL : ttl;
+		long expires = seconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds) : 0L;
+
+		return new OffHeapEntry(kind, out.generation, out.getBlocks(), out.length, contentType, headers, expires);
+	}
+
+	/**
+	 * read the value of a retained entry. The entry reference is released once the
+	 * value has been read.
+	 *
+	 * @param entry    retained entry
+	 * @param detached 'true' to copy body content on the heap and release the
+	 *                 entry immediately, instead of streaming it from off-heap
+	 *                 blocks
+	 * @return entry value
+	 * @throws CircuitAbortException if the value can't be read
+	 */
+	private Object read(OffHeapEntry entry, boolean detached) throws CircuitAbortException {
+		BlockInputStream in = new BlockInputStream(entry);
+
+		if ((entry.kind == KIND_BODY) && (!detached)) {
+			synchronized (index) {
+				/* track stream so blocks are released even if it is never closed */
+				in.reference = new StreamReference(in, entry, released);
+				streams.add(in.reference);
+			}
+
+			return createBody(entry, in);
+		}
+
+		try {
+			byte[] data = new byte[entry.length];
+			int offset = 0;
+			int read = 0;
+
+			while ((offset < data.length) && ((read = in.read(data, offset, data.length - offset)) > 0)) {
+				offset += read;
+			}
+
+			switch (entry.kind) {
+			case KIND_BODY:
+				return createBody(entry, new ByteArrayInputStream(data));
+			case KIND_BYTES:
+				return data;
+			case KIND_STRING:
+				return new String(data, UTF_8);
+			default:
+				return BinaryCacheValueCodec.fromByteArray(data);
+			}
+		} catch (IOException e) {
+			throw new CircuitAbortException("Unable to read value from off-heap cache", e);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static Body createBody(OffHeapEntry entry, InputStream in) {
+		HeaderSet headers = new HeaderSet();
+
+		for (int index = 0; index < entry.headers.length; index += 2) {
+			headers.addHeader(entry.headers[index], entry.headers[index + 1]);
+		}
+
+		ContentType contentType = entry.contentType == null ? null : new ContentType(ContentType.Authority.MIME, entry.contentType);
+
+		return Body.create(headers, contentType, new InputStreamContentSource(in));
+	}
+
+	private static String[] getHeaders(HeaderSet headers) {
+		List<String> result = new ArrayList<String>();
+
+		if (headers != null) {
+			Iterator<String> names = headers.getHeaderNames();
+
+			while (names.hasNext()) {
+				String name = names.next();
+				Iterator<String> values = headers.getHeaders(name);
+
+				while (values.hasNext()) {
+					result.add(name);
+					result.add(values.next());
+				}
+			}
+		}
+
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * allocate a block, evicting least recently used entries if needed. Must be
+	 * called with index lock held.
+	 *
+	 * @return allocated block or -1 if no block can be allocated
+	 */
+	private int allocateBlock() {
+		expunge();
+
+		while (freeCount == 0) {
+			if (slabs.size() < maxSlabs) {
+				int first = slabs.size() * blocksPerSlab;
+
+				slabs.add(ByteBuffer.allocateDirect(blocksPerSlab * blockSize));
+
+				/* push blocks in reverse order so they are allocated sequentially */
+				for (int block = first + blocksPerSlab - 1; block >= first; block--) {
+					freeBlocks[freeCount++] = block;
+				}
+			} else {
+				Iterator<OffHeapEntry> iterator = index.values().iterator();
+
+				if (!iterator.hasNext()) {
+					/* remaining blocks are used by opened streams or pending writes */
+					return -1;
+				}
+
+				OffHeapEntry eldest = iterator.next();
+
+				iterator.remove();
+				release(eldest);
+				evictions++;
+			}
+		}
+
+		return freeBlocks[--freeCount];
+	}
+
+	/**
+	 * give back blocks to free list. Must be called with index lock held.
+	 */
+	private void freeBlocks(int[] blocks, int count) {
+		for (int index = 0; index < count; index++) {
+			freeBlocks[freeCount++] = blocks[index];
+		}
+	}
+
+	/**
+	 * release a reference on an entry. Must be called with index lock held.
+	 */
+	private void release(OffHeapEntry entry) {
+		if ((entry != null) && (--entry.references == 0)) {
+			if (entry.slabs == slabs) {
+				freeBlocks(entry.blocks, entry.blocks.length);
+			}
+		}
+	}
+
+	/**
+	 * release entries of collected streams. Must be called with index lock held.
+	 */
+	private void expunge() {
+		StreamReference reference = null;
+
+		while ((reference = (StreamReference) released.poll()) != null) {
+			if (streams.remove(reference)) {
+				release(reference.entry);
+			}
+		}
+	}
+
+	private ByteBuffer getBlock(List<ByteBuffer> slabs, int block) {
+		ByteBuffer buffer = slabs.get(block / blocksPerSlab).duplicate();
+		int offset = (block % blocksPerSlab) * blockSize;
+
+		buffer.limit(offset + blockSize);
+		buffer.position(offset);
+
+		return buffer;
+	}
+
+	private final class OffHeapEntry {
+		private final byte kind;
+		private final int[] blocks;
+		private final int length;
+		private final String contentType;
+		private final String[] headers;
+		private final long expires;
+
+		/**
+		 * slabs used when this entry was written (blocks are not recycled if the cache
+		 * has been closed since)
+		 */
+		private final List<ByteBuffer> slabs;
+
+		/* guarded by index lock, index holds the first reference */
+		private int references = 1;
+
+		private OffHeapEntry(byte kind, List<ByteBuffer> slabs, int[] blocks, int length, String contentType, String[] headers, long expires) {
+			this.kind = kind;
+			this.slabs = slabs;
+			this.blocks = blocks;
+			this.length = length;
+			this.contentType = contentType;
+			this.headers = headers;
+			this.expires = expires;
+		}
+
+		private boolean isExpired(long now) {
+			return (expires != 0L) && ((now - expires) >= 0);
+		}
+	}
+
+	private static final class StreamReference extends PhantomReference<InputStream> {
+		private final OffHeapEntry entry;
+
+		private StreamReference(InputStream stream, OffHeapEntry entry, ReferenceQueue<InputStream> queue) {
+			super(stream, queue);
+
+			this.entry = entry;
+		}
+	}
+
+	private static final class CacheFullException extends IOException {
+		private static final long serialVersionUID = 3260816442574066014L;
+	}
+
+	/**
+	 * output stream writing directly in off-heap blocks
+	 */
+	private final class BlockOutputStream extends OutputStream {
+		/**
+		 * slabs used by this stream, writing fails if the cache is closed meanwhile
+		 */
+		private final List<ByteBuffer> generation = slabs;
+
+		private int[] blocks = new int[4];
+		private int count = 0;
+		private int length = 0;
+
+		private ByteBuffer current = null;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if ((length + (long) len) > ((long) freeBlocks.length * blockSize)) {
+				/* do not evict anything for a value larger than the cache */
+				throw new CacheFullException();
+			}
+
+			while (len > 0) {
+				if ((current == null) || (!current.hasRemaining())) {
+					current = nextBlock();
+				}
+
+				int chunk = Math.min(len, current.remaining());
+
+				current.put(b, off, chunk);
+				off += chunk;
+				len -= chunk;
+				length += chunk;
+			}
+		}
+
+		private ByteBuffer nextBlock() throws IOException {
+			int block = -1;
+
+			synchronized (index) {
+				block = generation == slabs ? allocateBlock() : -1;
+
+				if (block < 0) {
+					throw new CacheFullException();
+				}
+
+				if (count == blocks.length) {
+					blocks = Arrays.copyOf(blocks, count * 2);
+				}
+
+				blocks[count++] = block;
+
+				return getBlock(slabs, block);
+			}
+		}
+
+		private int[] getBlocks() {
+			return Arrays.copyOf(blocks, count);
+		}
+
+		private void discard() {
+			synchronized (index) {
+				if (generation == slabs) {
+					freeBlocks(blocks, count);
+				}
+			}
+
+			count = 0;
+		}
+	}
+
+	/**
+	 * input stream reading directly from off-heap blocks
+	 */
+	private final class BlockInputStream extends InputStream {
+		private final OffHeapEntry entry;
+
+		private StreamReference reference = null;
+		private int position = 0;
+		private boolean closed = false;
+
+		/* guarded by index lock */
+		private boolean detached = false;
+
+		private BlockInputStream(OffHeapEntry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+
+			return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (closed) {
+				throw new IOException("stream closed");
+			}
+
+			int remaining = entry.length - position;
+
+			if (remaining <= 0) {
+				/* end of stream reached, blocks are no longer needed */
+				detach();
+
+				return -1;
+			}
+
+			int total = 0;
+
+			len = Math.min(len, remaining);
+
+			while (len > 0) {
+				ByteBuffer buffer = getBlock(entry.slabs, entry.blocks[position / blockSize]);
+				int offset = position % blockSize;
+				int chunk = Math.min(len, blockSize - offset);
+
+				buffer.position(buffer.position() + offset);
+				buffer.get(b, off, chunk);
+
+				off += chunk;
+				len -= chunk;
+				total += chunk;
+				position += chunk;
+			}
+
+			if (position == entry.length) {
+				/* last byte has been read, do not wait for close */
+				detach();
+			}
+
+			return total;
+		}
+
+		@Override
+		public int available() {
+			return closed ? 0 : entry.length - position;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+
+			detach();
+		}
+
+		/**
+		 * release the entry reference held by this stream. This is done once, either
+		 * when the whole value has been read or when the stream is closed. The phantom
+		 * reference is only a fallback for streams which are neither consumed nor
+		 * closed.
+		 */
+		private void detach() {
+			synchronized (index) {
+				if (!detached) {
+					detached = true;
+
+					if (reference != null) {
+						/* released here, not when collected */
+						streams.remove(reference);
+						reference.clear();
+					}
+
+					release(entry);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import com.vordel.circuit.CircuitAbortException;
+import com.vordel.circuit.Message;
+
+/**
+ * Cache loader which runs a policy (or any other invocable resource) to compute
+ * missing cache values. The requested key is set in the given message before
+ * invocation, and the value is read from the message after a successful
+ * invocation. If the policy fails, nothing is cached. Since the message is
+ * owned by the caller, refresh ahead of expiration is done by the calling
+ * thread, which gets the reloaded value.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class PolicyCacheLoader implements CacheLoader {
+	private final InvocableResource policy;
+	private final Message message;
+	private final String keyAttribute;
+	private final String valueAttribute;
+
+	/**
+	 * create a policy loader bound to the given message
+	 *
+	 * @param policy         policy to be invoked on cache miss
+	 * @param message        message used for policy invocation
+	 * @param keyAttribute   attribute name which receives the requested key (may
+	 *                       be <code>null</code>)
+	 * @param valueAttribute attribute name set by the policy with the value to be
+	 *                       cached
+	 */
+	public PolicyCacheLoader(InvocableResource policy, Message message, String keyAttribute, String valueAttribute) {
+		if ((policy == null) || (message == null) || (valueAttribute == null)) {
+			throw new IllegalArgumentException("policy, message and value attribute are required");
+		}
+
+		this.policy = policy;
+		this.message = message;
+		this.keyAttribute = keyAttribute;
+		this.valueAttribute = valueAttribute;
+	}
+
+	@Override
+	public Object load(Object key) throws CircuitAbortException {
+		Object value = null;
+
+		if (keyAttribute != null) {
+			message.put(keyAttribute, key);
+		}
+
+		if (policy.invoke(message)) {
+			value = message.get(valueAttribute);
+		}
+
+		return value;
+	}
+
+	@Override
+	public boolean isAsynchronous() {
+		/* the message belongs to the calling thread */
+		return false;
+	}
+}
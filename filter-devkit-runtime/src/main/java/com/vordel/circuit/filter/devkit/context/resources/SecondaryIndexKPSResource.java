@@ -0,0 +1,357 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.vordel.kps.ObjectExists;
+import com.vordel.kps.ObjectNotFound;
+import com.vordel.kps.Store;
+import com.vordel.kps.query.KeyQuery;
+
+/**
+ * KPS resource which keeps a local index from configured (non primary) field
+ * values to primary keys. Lookups on an indexed field resolve the primary key
+ * in memory and use the store cached read by primary key instead of a field
+ * query. Indexed fields are expected to be unique within the store.
+ *
+ * The index is filled by lookups and maintained on writes made through this
+ * resource. Since other nodes (or other resources) may update the store, each
+ * indexed lookup checks the field value of the returned entry and falls back to
+ * a store query when the mapping is stale. The number of indexed entries is
+ * bounded, least recently used entries are dropped first.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class SecondaryIndexKPSResource extends KPSResource {
+	private final KPSResource resource;
+	private final Set<String> fields;
+	private final int maxSize;
+
+	/* fields below are guarded by byKey lock */
+	private final Map<String, Map<String, Object>> byField = new HashMap<String, Map<String, Object>>();
+	private final LinkedHashMap<Object, Map<String, String>> byKey = new LinkedHashMap<Object, Map<String, String>>(16, 0.75f, true);
+
+	/**
+	 * wraps a KPS resource with a secondary index
+	 *
+	 * @param resource wrapped KPS resource
+	 * @param fields   names of indexed fields
+	 * @param maxSize  maximum number of indexed entries
+	 */
+	public SecondaryIndexKPSResource(KPSResource resource, Collection<String> fields, int maxSize) {
+		if (resource == null) {
+			throw new IllegalArgumentException("wrapped KPS resource cannot be null");
+		}
+
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maximum size must be positive");
+		}
+
+		Set<String> indexed = new LinkedHashSet<String>();
+
+		if (fields != null) {
+			for (String field : fields) {
+				if (field != null) {
+					indexed.add(field);
+					byField.put(field, new HashMap<String, Object>());
+				}
+			}
+		}
+
+		this.resource = resource;
+		this.fields = Collections.unmodifiableSet(indexed);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return names of indexed fields
+	 */
+	public Set<String> getIndexedFields() {
+		return fields;
+	}
+
+	/**
+	 * @return number of indexed entries
+	 */
+	public int getIndexSize() {
+		synchronized (byKey) {
+			return byKey.size();
+		}
+	}
+
+	/**
+	 * drop all index mappings
+	 */
+	public void invalidateAll() {
+		synchronized (byKey) {
+			byKey.clear();
+
+			for (Map<String, Object> values : byField.values()) {
+				values.clear();
+			}
+		}
+	}
+
+	@Override
+	public Store getStore() {
+		return resource.getStore();
+	}
+
+	@Override
+	public String getPrimaryKey() {
+		return resource.getPrimaryKey();
+	}
+
+	@Override
+	public List<String> getReadKey() {
+		return resource.getReadKey();
+	}
+
+	@Override
+	public Map<String, Object> getCached(KeyQuery query) throws ObjectNotFound {
+		return resource.getCached(query);
+	}
+
+	@Override
+	public Map<String, Object> getCached(Object id) throws ObjectNotFound {
+		return resource.getCached(id);
+	}
+
+	@Override
+	public Map<String, Object> getCachedByReadKey(List<Pair<String, Object>> pairs) throws ObjectNotFound {
+		Map<String, Object> entry = null;
+
+		if ((pairs != null) && (pairs.size() == 1) && fields.contains(pairs.get(0).getLeft())) {
+			Pair<String, Object> pair = pairs.get(0);
+
+			entry = getCachedByField(pair.getLeft(), pair.getRight());
+		} else {
+			entry = resource.getCachedByReadKey(pairs);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * retrieve a cached entry using a single field value. If the field is indexed,
+	 * the primary key is resolved in memory.
+	 *
+	 * @param field field name
+	 * @param value field value
+	 * @return cached entry
+	 * @throws ObjectNotFound if no entry matches the given value
+	 */
+	public Map<String, Object> getCachedByField(String field, Object value) throws ObjectNotFound {
+		String indexed = indexValue(value);
+		Map<String, Object> entry = null;
+
+		if ((indexed != null) && fields.contains(field)) {
+			Object id = null;
+
+			synchronized (byKey) {
+				id = byField.get(field).get(indexed);
+
+				if (id != null) {
+					/* record access for eviction order */
+					byKey.get(id);
+				}
+			}
+
+			if (id != null) {
+				try {
+					entry = resource.getCached(id);
+
+					if (!indexed.equals(indexValue(entry.get(field)))) {
+						/* entry has been updated elsewhere, fix mappings */
+						index(entry);
+
+						entry = null;
+					}
+				} catch (ObjectNotFound e) {
+					/* entry has been removed or expired */
+					unindex(id);
+				}
+			}
+
+			if (entry == null) {
+				entry = resource.getCachedByReadKey(Collections.singletonList(Pair.of(field, value)));
+
+				index(entry);
+			}
+		} else {
+			entry = resource.getCachedByReadKey(Collections.singletonList(Pair.of(field, value)));
+		}
+
+		return entry;
+	}
+
+	@Override
+	public Map<String, Object> getEntry(Object key) throws ObjectNotFound {
+		return resource.getEntry(key);
+	}
+
+	@Override
+	public Map<String, Object> createEntry(Map<String, Object> entry) throws ObjectExists {
+		Map<String, Object> created = resource.createEntry(entry);
+
+		index(created == null ? entry : created);
+
+		return created;
+	}
+
+	@Override
+	public Map<String, Object> createEntry(Map<String, Object> entry, int ttl) throws ObjectExists {
+		Map<String, Object> created = resource.createEntry(entry, ttl);
+
+		index(created == null ? entry : created);
+
+		return created;
+	}
+
+	@Override
+	public Map<String, Object> updateEntry(Map<String, Object> entry) throws ObjectNotFound, ObjectExists {
+		Map<String, Object> updated = null;
+		boolean success = false;
+
+		try {
+			updated = resource.updateEntry(entry);
+			success = true;
+		} finally {
+			if (success) {
+				index(updated == null ? entry : updated);
+			} else if (entry != null) {
+				/* entry state is unknown */
+				unindex(entry.get(getPrimaryKey()));
+			}
+		}
+
+		return updated;
+	}
+
+	@Override
+	public Map<String, Object> updateEntry(Map<String, Object> entry, int ttl) throws ObjectNotFound, ObjectExists {
+		Map<String, Object> updated = null;
+		boolean success = false;
+
+		try {
+			updated = resource.updateEntry(entry, ttl);
+			success = true;
+		} finally {
+			if (success) {
+				index(updated == null ? entry : updated);
+			} else if (entry != null) {
+				/* entry state is unknown */
+				unindex(entry.get(getPrimaryKey()));
+			}
+		}
+
+		return updated;
+	}
+
+	@Override
+	public void removeEntry(Object key) throws ObjectNotFound {
+		try {
+			resource.removeEntry(key);
+		} finally {
+			unindex(key);
+		}
+	}
+
+	/**
+	 * replace index mappings of the given entry with its current field values
+	 *
+	 * @param entry KPS entry
+	 */
+	private void index(Map<String, Object> entry) {
+		Object id = entry == null ? null : entry.get(getPrimaryKey());
+
+		if (id != null) {
+			Map<String, String> values = new HashMap<String, String>();
+
+			for (String field : fields) {
+				String value = indexValue(entry.get(field));
+
+				if (value != null) {
+					values.put(field, value);
+				}
+			}
+
+			synchronized (byKey) {
+				remove(id);
+
+				for (Entry<String, String> value : values.entrySet()) {
+					Object previous = byField.get(value.getKey()).put(value.getValue(), id);
+
+					if ((previous != null) && (!previous.equals(id))) {
+						/* value moved to another entry, previous mapping is stale */
+						Map<String, String> stale = byKey.get(previous);
+
+						if (stale != null) {
+							stale.remove(value.getKey());
+						}
+					}
+				}
+
+				byKey.put(id, values);
+
+				Iterator<Entry<Object, Map<String, String>>> iterator = byKey.entrySet().iterator();
+
+				while (byKey.size() > maxSize) {
+					Entry<Object, Map<String, String>> eldest = iterator.next();
+
+					iterator.remove();
+					removeFieldValues(eldest.getKey(), eldest.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * remove index mappings of the given primary key
+	 *
+	 * @param id primary key value
+	 */
+	private void unindex(Object id) {
+		if (id != null) {
+			synchronized (byKey) {
+				remove(id);
+			}
+		}
+	}
+
+	/**
+	 * remove mappings of the given primary key. Must be called with byKey lock
+	 * held.
+	 */
+	private void remove(Object id) {
+		Map<String, String> values = byKey.remove(id);
+
+		if (values != null) {
+			removeFieldValues(id, values);
+		}
+	}
+
+	/**
+	 * remove field mappings which still point to the given primary key. Must be
+	 * called with byKey lock held.
+	 */
+	private void removeFieldValues(Object id, Map<String, String> values) {
+		for (Entry<String, String> value : values.entrySet()) {
+			byField.get(value.getKey()).remove(value.getValue(), id);
+		}
+	}
+
+	private static String indexValue(Object value) {
+		return value == null ? null : value.toString();
+	}
+}
@@ -2,7 +2,11 @@ package com.vordel.circuit.filter.devkit.context.resources;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.el.ELException;
 
@@ -29,6 +33,13 @@ import com.vordel.trace.Trace;
  * @param <T> type returned by this selector
  */
 public class SelectorResource<T> implements SubstitutableResource<T> {
+	/**
+	 * compiled selectors shared by literal and coercion type. Values are weakly
+	 * referenced so unused selectors can be reclaimed.
+	 */
+	private static final ConcurrentMap<SelectorKey, SelectorReference> SELECTORS = new ConcurrentHashMap<SelectorKey, SelectorReference>();
+	private static final ReferenceQueue<Selector<?>> RELEASED = new ReferenceQueue<Selector<?>>();
+
 	private Selector<T> selector;
 
 	public SelectorResource(String expression, Class<T> clazz) {
@@ -96,7 +107,53 @@ public class SelectorResource<T> implements SubstitutableResource<T> {
 			}
 		}
 
-		return literal == null ? null : new Selector<T>(literal, clazz);
+		return literal == null ? null : intern(literal, clazz);
+	}
+
+	/**
+	 * retrieve a shared selector for the given literal and coercion type, creating
+	 * it if needed. Since selectors are immutable once parsed, the same instance
+	 * can be used by all resources and filters which use the same expression.
+	 * 
+	 * @param <T>     expected type
+	 * @param literal selector literal
+	 * @param clazz   class for selector coercion
+	 * @return shared selector
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Selector<T> intern(String literal, Class<T> clazz) {
+		SelectorKey key = new SelectorKey(literal, clazz);
+		Selector<?> selector = null;
+
+		expungeSelectors();
+
+		do {
+			SelectorReference reference = SELECTORS.get(key);
+
+			selector = reference == null ? null : reference.get();
+
+			if (selector == null) {
+				Selector<T> created = new Selector<T>(literal, clazz);
+				SelectorReference update = new SelectorReference(key, created, RELEASED);
+
+				if ((reference == null) ? (SELECTORS.putIfAbsent(key, update) == null) : SELECTORS.replace(key, reference, update)) {
+					selector = created;
+				}
+			}
+		} while (selector == null);
+
+		return (Selector<T>) selector;
+	}
+
+	/**
+	 * remove cache entries for reclaimed selectors
+	 */
+	private static void expungeSelectors() {
+		SelectorReference reference = null;
+
+		while ((reference = (SelectorReference) RELEASED.poll()) != null) {
+			SELECTORS.remove(reference.key, reference);
+		}
 	}
 
 	/**
@@ -273,4 +330,42 @@ public class SelectorResource<T> implements SubstitutableResource<T> {
 		 */
 		return (value == null) || DictionaryResolver.isResolvable(value.getClass());
 	}
+
+	private static final class SelectorKey {
+		private final String literal;
+		private final Class<?> clazz;
+
+		private SelectorKey(String literal, Class<?> clazz) {
+			this.literal = literal;
+			this.clazz = clazz;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * literal.hashCode()) + clazz.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (obj instanceof SelectorKey) {
+				SelectorKey other = (SelectorKey) obj;
+
+				return literal.equals(other.literal) && clazz.equals(other.clazz);
+			}
+
+			return false;
+		}
+	}
+
+	private static final class SelectorReference extends WeakReference<Selector<?>> {
+		private final SelectorKey key;
+
+		private SelectorReference(SelectorKey key, Selector<?> selector, ReferenceQueue<Selector<?>> queue) {
+			super(selector, queue);
+
+			this.key = key;
+		}
+	}
 }
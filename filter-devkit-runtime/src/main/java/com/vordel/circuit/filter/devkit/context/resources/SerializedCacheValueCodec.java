@@ -0,0 +1,35 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import com.vordel.circuit.cache.BodySerializer;
+import com.vordel.mime.Body;
+
+/**
+ * Java serialization codec. Values are stored as is and message bodies are
+ * wrapped using {@link BodySerializer}.
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class SerializedCacheValueCodec implements CacheValueCodec {
+	@Override
+	public Serializable encode(Object value) throws IOException {
+		if (value instanceof Body) {
+			value = new BodySerializer((Body) value);
+		}
+
+		return value instanceof Serializable ? (Serializable) value : null;
+	}
+
+	@Override
+	public Object decode(Object stored) throws IOException {
+		Object result = stored;
+
+		if (result instanceof BodySerializer) {
+			result = ((BodySerializer) result).getAsBody();
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,739 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent in-heap cache using the W-TinyLFU eviction policy. New entries are
+ * kept in a small LRU admission window. When the window overflows, its least
+ * recently used entry is admitted in the main segmented LRU space only if its
+ * estimated access frequency is higher than the main space victim. Entries
+ * are weighed so the cache can be bounded by estimated size rather than entry
+ * count, and each entry may have its own time to live.
+ *
+ * Reads are lock free. Policy updates are done under a single lock which is
+ * only tried on reads (access recording is lossy under contention).
+ *
+ * @author rdesaintleger@axway.com
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class WindowTinyLfuCache<K, V> {
+	private static final int QUEUE_NEW = 0;
+	private static final int QUEUE_WINDOW = 1;
+	private static final int QUEUE_PROBATION = 2;
+	private static final int QUEUE_PROTECTED = 3;
+	private static final int QUEUE_DEAD = 4;
+
+	private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<K, Node<K, V>>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final Weigher<? super K, ? super V> weigher;
+	private final FrequencySketch sketch;
+
+	private final AccessQueue<K, V> window = new AccessQueue<K, V>();
+	private final AccessQueue<K, V> probation = new AccessQueue<K, V>();
+	private final AccessQueue<K, V> protect = new AccessQueue<K, V>();
+
+	private final long maximum;
+	private final long windowMaximum;
+	private final long protectedMaximum;
+
+	/* weights below are guarded by eviction lock */
+	private long totalWeight = 0L;
+	private long windowWeight = 0L;
+	private long protectedWeight = 0L;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * create a new cache
+	 *
+	 * @param maximum maximum total weight of entries
+	 * @param weigher weigher used to compute entry weights
+	 */
+	public WindowTinyLfuCache(long maximum, Weigher<? super K, ? super V> weigher) {
+		if (maximum <= 0) {
+			throw new IllegalArgumentException("maximum cache weight must be positive");
+		}
+
+		if (weigher == null) {
+			throw new IllegalArgumentException("weigher cannot be null");
+		}
+
+		long main = maximum - Math.max(1L, maximum / 100L);
+
+		this.maximum = maximum;
+		this.weigher = weigher;
+		this.windowMaximum = maximum - main;
+		this.protectedMaximum = (main * 4L) / 5L;
+		this.sketch = new FrequencySketch(weigher == Weigher.SINGLETON ? maximum : Math.min(maximum, 1L << 20));
+	}
+
+	/**
+	 * retrieve a value from the cache
+	 *
+	 * @param key key of value
+	 * @return value if present and not expired, <code>null</code> otherwise
+	 */
+	public V get(Object key) {
+		Node<K, V> node = getNode(key, System.nanoTime());
+		V value = null;
+
+		if (node == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+			value = node.value;
+		}
+
+		return value;
+	}
+
+	/**
+	 * retrieve a value from the cache without affecting statistics and eviction
+	 * policy.
+	 *
+	 * @param key key of value
+	 * @return value if present and not expired, <code>null</code> otherwise
+	 */
+	public V peek(Object key) {
+		Node<K, V> node = data.get(key);
+
+		return (node == null) || node.isExpired(System.nanoTime()) ? null : node.value;
+	}
+
+	/**
+	 * retrieve remaining time to live of a mapping without affecting statistics and
+	 * eviction policy.
+	 *
+	 * @param key key to be checked
+	 * @return remaining time in milli-seconds, -1 if no mapping exists or if the
+	 *         mapping does not expire
+	 */
+	public long getRemainingTime(Object key) {
+		Node<K, V> node = data.get(key);
+		long now = System.nanoTime();
+		long remaining = -1L;
+
+		if ((node != null) && (node.expires != 0L) && (!node.isExpired(now))) {
+			remaining = TimeUnit.NANOSECONDS.toMillis(node.expires - now);
+		}
+
+		return remaining;
+	}
+
+	/**
+	 * @param key key to be checked
+	 * @return 'true' if a non expired mapping exists for this key
+	 */
+	public boolean containsKey(Object key) {
+		return peek(key) != null;
+	}
+
+	private Node<K, V> getNode(Object key, long now) {
+		Node<K, V> node = data.get(key);
+
+		if (node != null) {
+			if (node.isExpired(now)) {
+				if (data.remove(node.key, node)) {
+					afterRemove(node);
+				}
+
+				node = null;
+			} else if (evictionLock.tryLock()) {
+				/* record access, dropped if policy is busy */
+				try {
+					onAccess(node);
+				} finally {
+					evictionLock.unlock();
+				}
+			}
+		}
+
+		return node;
+	}
+
+	/**
+	 * put a value in the cache. A value heavier than the cache maximum weight is
+	 * not cached and the previous mapping is removed.
+	 *
+	 * @param key   key of value
+	 * @param value value to be put
+	 * @param ttl   time to live in milli-seconds (0 means no expiration)
+	 * @return previous non expired value if any
+	 */
+	public V put(K key, V value, long ttl) {
+		Node<K, V> node = newNode(key, value, ttl);
+
+		if (isOverweight(node)) {
+			return remove(key);
+		}
+
+		Node<K, V> prior = data.put(key, node);
+
+		afterWrite(prior, node);
+
+		return value(prior, node.created);
+	}
+
+	/**
+	 * put a value in the cache if no mapping exists for the given key.
+	 *
+	 * @param key   key of value
+	 * @param value value to be put
+	 * @param ttl   time to live in milli-seconds (0 means no expiration)
+	 * @return existing value (cache not modified), <code>null</code> if value has
+	 *         been put
+	 */
+	public V putIfAbsent(K key, V value, long ttl) {
+		Node<K, V> node = newNode(key, value, ttl);
+
+		if (isOverweight(node)) {
+			/* value is not cached, return existing value if any */
+			return value(data.get(key), node.created);
+		}
+
+		for (;;) {
+			Node<K, V> prior = data.putIfAbsent(key, node);
+
+			if (prior == null) {
+				afterWrite(null, node);
+
+				return null;
+			} else if (!prior.isExpired(node.created)) {
+				return prior.value;
+			} else if (data.replace(key, prior, node)) {
+				/* replace expired mapping */
+				afterWrite(prior, node);
+
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * replace an existing mapping.
+	 *
+	 * @param key   key of value
+	 * @param value value to be put
+	 * @param ttl   time to live in milli-seconds (0 means no expiration)
+	 * @return replaced value, <code>null</code> if no mapping exists (cache not
+	 *         modified)
+	 */
+	public V replace(K key, V value, long ttl) {
+		Node<K, V> node = newNode(key, value, ttl);
+
+		if (isOverweight(node)) {
+			/* value is not cached, existing mapping is removed */
+			return remove(key);
+		}
+
+		for (;;) {
+			Node<K, V> prior = data.get(key);
+
+			if ((prior == null) || prior.isExpired(node.created)) {
+				return null;
+			} else if (data.replace(key, prior, node)) {
+				afterWrite(prior, node);
+
+				return prior.value;
+			}
+		}
+	}
+
+	/**
+	 * replace an existing mapping if its value is equal to the expected one.
+	 *
+	 * @param key      key of value
+	 * @param expected expected current value
+	 * @param value    value to be put
+	 * @param ttl      time to live in milli-seconds (0 means no expiration)
+	 * @return 'true' if the mapping has been replaced
+	 */
+	public boolean replace(K key, V expected, V value, long ttl) {
+		Node<K, V> node = newNode(key, value, ttl);
+
+		if (isOverweight(node)) {
+			/* value is not cached, existing mapping is removed */
+			return remove(key, expected);
+		}
+
+		Node<K, V> prior = data.get(key);
+		boolean replaced = (prior != null) && (!prior.isExpired(node.created)) && prior.value.equals(expected) && data.replace(key, prior, node);
+
+		if (replaced) {
+			afterWrite(prior, node);
+		}
+
+		return replaced;
+	}
+
+	/**
+	 * remove a mapping
+	 *
+	 * @param key key to be removed
+	 * @return removed non expired value if any
+	 */
+	public V remove(Object key) {
+		Node<K, V> prior = data.remove(key);
+
+		if (prior != null) {
+			afterRemove(prior);
+		}
+
+		return value(prior, System.nanoTime());
+	}
+
+	/**
+	 * remove a mapping if its value is equal to the expected one
+	 *
+	 * @param key      key to be removed
+	 * @param expected expected current value
+	 * @return 'true' if the mapping has been removed
+	 */
+	public boolean remove(Object key, Object expected) {
+		Node<K, V> prior = data.get(key);
+		boolean removed = (prior != null) && (!prior.isExpired(System.nanoTime())) && prior.value.equals(expected) && data.remove(key, prior);
+
+		if (removed) {
+			afterRemove(prior);
+		}
+
+		return removed;
+	}
+
+	/**
+	 * remove all mappings
+	 */
+	public void clear() {
+		Iterator<Node<K, V>> iterator = data.values().iterator();
+
+		while (iterator.hasNext()) {
+			Node<K, V> node = iterator.next();
+
+			if (data.remove(node.key, node)) {
+				afterRemove(node);
+			}
+		}
+	}
+
+	/**
+	 * @return number of mappings (may include expired entries not yet removed)
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	/**
+	 * @return iterator on keys of non expired mappings. Removing keys using the
+	 *         iterator is supported.
+	 */
+	public Iterator<K> keys() {
+		final Iterator<Node<K, V>> iterator = data.values().iterator();
+
+		return new Iterator<K>() {
+			private Node<K, V> next = null;
+			private Node<K, V> current = null;
+
+			@Override
+			public boolean hasNext() {
+				long now = System.nanoTime();
+
+				while ((next == null) && iterator.hasNext()) {
+					Node<K, V> node = iterator.next();
+
+					if (!node.isExpired(now)) {
+						next = node;
+					}
+				}
+
+				return next != null;
+			}
+
+			@Override
+			public K next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				current = next;
+				next = null;
+
+				return current.key;
+			}
+
+			@Override
+			public void remove() {
+				if (current == null) {
+					throw new IllegalStateException("no previous key returned by 'next()'");
+				}
+
+				if (data.remove(current.key, current)) {
+					afterRemove(current);
+				}
+
+				current = null;
+			}
+		};
+	}
+
+	/**
+	 * @return snapshot iterator on non expired values
+	 */
+	public Iterator<V> values() {
+		final Iterator<Node<K, V>> iterator = data.values().iterator();
+
+		return new Iterator<V>() {
+			private V next = null;
+
+			@Override
+			public boolean hasNext() {
+				long now = System.nanoTime();
+
+				while ((next == null) && iterator.hasNext()) {
+					Node<K, V> node = iterator.next();
+
+					if (!node.isExpired(now)) {
+						next = node.value;
+					}
+				}
+
+				return next != null;
+			}
+
+			@Override
+			public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				try {
+					return next;
+				} finally {
+					next = null;
+				}
+			}
+		};
+	}
+
+	/**
+	 * remove all expired entries. Expired entries are otherwise removed lazily
+	 * when accessed or evicted.
+	 */
+	public void cleanUp() {
+		long now = System.nanoTime();
+
+		for (Map.Entry<K, Node<K, V>> entry : data.entrySet()) {
+			Node<K, V> node = entry.getValue();
+
+			if (node.isExpired(now) && data.remove(node.key, node)) {
+				afterRemove(node);
+			}
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return current total weight of entries
+	 */
+	public long getWeight() {
+		evictionLock.lock();
+
+		try {
+			return totalWeight;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private Node<K, V> newNode(K key, V value, long ttl) {
+		if ((key == null) || (value == null)) {
+			throw new NullPointerException();
+		}
+
+		long now = System.nanoTime();
+		long expires = ttl > 0 ? now + TimeUnit.MILLISECONDS.toNanos(ttl) : 0L;
+		int weight = Math.max(weigher.weigh(key, value), 0);
+
+		return new Node<K, V>(key, value, weight, now, expires);
+	}
+
+	/**
+	 * check if an entry can't fit in the cache. Such entries are rejected up
+	 * front, otherwise they would evict all other entries before being evicted
+	 * themselves.
+	 */
+	private boolean isOverweight(Node<K, V> node) {
+		return node.weight > maximum;
+	}
+
+	private static <K, V> V value(Node<K, V> node, long now) {
+		return (node == null) || node.isExpired(now) ? null : node.value;
+	}
+
+	private void afterWrite(Node<K, V> prior, Node<K, V> node) {
+		evictionLock.lock();
+
+		try {
+			if (prior != null) {
+				unlink(prior);
+			}
+
+			onAdd(node);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void afterRemove(Node<K, V> node) {
+		evictionLock.lock();
+
+		try {
+			unlink(node);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void onAdd(Node<K, V> node) {
+		/* node may have been replaced or removed before getting the lock */
+		if (node.queue == QUEUE_NEW) {
+			sketch.increment(node.key);
+
+			node.queue = QUEUE_WINDOW;
+			window.addLast(node);
+			windowWeight += node.weight;
+			totalWeight += node.weight;
+
+			evict();
+		}
+	}
+
+	private void onAccess(Node<K, V> node) {
+		switch (node.queue) {
+		case QUEUE_WINDOW:
+			sketch.increment(node.key);
+			window.moveToBack(node);
+			break;
+		case QUEUE_PROBATION:
+			sketch.increment(node.key);
+
+			/* promote to protected segment */
+			probation.remove(node);
+			protect.addLast(node);
+			node.queue = QUEUE_PROTECTED;
+			protectedWeight += node.weight;
+
+			while ((protectedWeight > protectedMaximum) && (protect.first != null)) {
+				Node<K, V> demoted = protect.pollFirst();
+
+				protectedWeight -= demoted.weight;
+				probation.addLast(demoted);
+				demoted.queue = QUEUE_PROBATION;
+			}
+			break;
+		case QUEUE_PROTECTED:
+			sketch.increment(node.key);
+			protect.moveToBack(node);
+			break;
+		default:
+			/* node not yet added, or already removed */
+			break;
+		}
+	}
+
+	private void unlink(Node<K, V> node) {
+		switch (node.queue) {
+		case QUEUE_WINDOW:
+			window.remove(node);
+			windowWeight -= node.weight;
+			totalWeight -= node.weight;
+			break;
+		case QUEUE_PROBATION:
+			probation.remove(node);
+			totalWeight -= node.weight;
+			break;
+		case QUEUE_PROTECTED:
+			protect.remove(node);
+			protectedWeight -= node.weight;
+			totalWeight -= node.weight;
+			break;
+		default:
+			break;
+		}
+
+		node.queue = QUEUE_DEAD;
+	}
+
+	private void evict() {
+		int candidates = 0;
+
+		/* move window overflow at the end of probation segment */
+		while ((windowWeight > windowMaximum) && (window.first != null)) {
+			Node<K, V> node = window.pollFirst();
+
+			windowWeight -= node.weight;
+			probation.addLast(node);
+			node.queue = QUEUE_PROBATION;
+			candidates++;
+		}
+
+		while (totalWeight > maximum) {
+			Node<K, V> victim = probation.first;
+			Node<K, V> candidate = candidates > 0 ? probation.last : null;
+
+			if (victim == null) {
+				victim = protect.first != null ? protect.first : window.first;
+			}
+
+			if (victim == null) {
+				break;
+			} else if ((candidate == null) || (candidate == victim)) {
+				if (candidate == victim) {
+					candidates--;
+				}
+
+				evictNode(victim);
+			} else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+				/* candidate is admitted, victim is evicted */
+				evictNode(victim);
+			} else {
+				/* candidate is rejected */
+				candidates--;
+				evictNode(candidate);
+			}
+		}
+	}
+
+	private void evictNode(Node<K, V> node) {
+		data.remove(node.key, node);
+		unlink(node);
+		evictions.increment();
+	}
+
+	/**
+	 * computes weight of cache entries
+	 *
+	 * @param <K> key type
+	 * @param <V> value type
+	 */
+	public interface Weigher<K, V> {
+		/**
+		 * weigher which gives a weight of 1 for each entry (cache bounded by entry
+		 * count)
+		 */
+		public static final Weigher<Object, Object> SINGLETON = new Weigher<Object, Object>() {
+			@Override
+			public int weigh(Object key, Object value) {
+				return 1;
+			}
+		};
+
+		/**
+		 * @param key   key of entry
+		 * @param value value of entry
+		 * @return weight of entry
+		 */
+		public int weigh(K key, V value);
+	}
+
+	private static final class Node<K, V> {
+		private final K key;
+		private final V value;
+		private final int weight;
+		private final long created;
+		private final long expires;
+
+		/* fields below are guarded by eviction lock */
+		private int queue = QUEUE_NEW;
+		private Node<K, V> previous = null;
+		private Node<K, V> next = null;
+
+		private Node(K key, V value, int weight, long created, long expires) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.created = created;
+			this.expires = expires;
+		}
+
+		private boolean isExpired(long now) {
+			return (expires != 0L) && ((now - expires) >= 0);
+		}
+	}
+
+	/**
+	 * intrusive doubly linked access queue
+	 */
+	private static final class AccessQueue<K, V> {
+		private Node<K, V> first = null;
+		private Node<K, V> last = null;
+
+		private void addLast(Node<K, V> node) {
+			node.previous = last;
+			node.next = null;
+
+			if (last == null) {
+				first = node;
+			} else {
+				last.next = node;
+			}
+
+			last = node;
+		}
+
+		private void remove(Node<K, V> node) {
+			if (node.previous == null) {
+				first = node.next;
+			} else {
+				node.previous.next = node.next;
+			}
+
+			if (node.next == null) {
+				last = node.previous;
+			} else {
+				node.next.previous = node.previous;
+			}
+
+			node.previous = null;
+			node.next = null;
+		}
+
+		private Node<K, V> pollFirst() {
+			Node<K, V> node = first;
+
+			if (node != null) {
+				remove(node);
+			}
+
+			return node;
+		}
+
+		private void moveToBack(Node<K, V> node) {
+			if (node != last) {
+				remove(node);
+				addLast(node);
+			}
+		}
+	}
+}
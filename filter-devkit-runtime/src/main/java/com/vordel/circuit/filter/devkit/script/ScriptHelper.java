@@ -11,6 +11,7 @@ import java.io.StringWriter;
 import java.nio.Buffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.util.Base64;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
@@ -30,6 +31,7 @@ import org.xml.sax.SAXException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vordel.circuit.cache.BodySerializer;
+import com.vordel.circuit.filter.devkit.context.resources.BinaryCacheValueCodec;
 import com.vordel.circuit.filter.devkit.context.resources.SelectorResource;
 import com.vordel.common.xml.XmlParserCache;
 import com.vordel.dwe.ContentSource;
@@ -311,12 +313,9 @@ public class ScriptHelper {
 	public static String asSerializable(Object value) throws IOException {
 		String result = null;
 
-		if (value instanceof Body) {
-			value = new BodySerializer((Body) value);
-		}
-
-		if ((value == null) || (value instanceof Serializable)) {
-			result = encodeSerializable((Serializable) value);
+		if ((value == null) || (value instanceof Body) || (value instanceof Serializable)) {
+			/* bodies are wrapped by the encoder if needed */
+			result = encodeValue(value);
 		}
 
 		return result;
@@ -326,7 +325,7 @@ public class ScriptHelper {
 		Object result = null;
 
 		if (element != null) {
-			result = decodeSerializable(element);
+			result = decodeValue(element);
 
 			if (result instanceof BodySerializer) {
 				result = ((BodySerializer) result).getAsBody();
@@ -369,48 +368,158 @@ public class ScriptHelper {
 		return unescapeLiteral(result);
 	}
 
+	/**
+	 * Prefix of the versioned compact encoding. It is followed by the encoding
+	 * version, a colon and the Base64 encoded value.
+	 */
+	private static final String ENCODED_MAGIC = "\u00ac\u00ed:";
+	/**
+	 * Compact encoding version 1 (binary format of {@link BinaryCacheValueCodec})
+	 */
+	private static final char ENCODED_VERSION_1 = '1';
+	/**
+	 * Write values using the versioned compact encoding
+	 * (filterdevkit.script.compactEncoding system property). Values are written
+	 * using the legacy Java serialization literal encoding by default, so encoded
+	 * values can still be read by previous versions. Both encodings are always
+	 * decoded.
+	 */
+	private static final boolean COMPACT_ENCODING = Boolean.getBoolean("filterdevkit.script.compactEncoding");
+
 	private static String unescapeMagic(String data) {
 		return unescapeLiteral(data, STREAM_MAGIC.length());
 	}
 
+	/**
+	 * check if the given string can be returned as is by the encoder
+	 * 
+	 * @param value string to be checked
+	 * @return 'true' if the string does not start with any encoding magic
+	 */
+	private static boolean isPlainString(String value) {
+		return (!value.startsWith(ENCODED_MAGIC)) && (!unescapeMagic(value).startsWith(STREAM_MAGIC));
+	}
+
+	/**
+	 * encode a value as a string. Strings which do not look like an encoded value
+	 * are returned as is. Other values are encoded using the legacy Java
+	 * serialization literal encoding, or the versioned compact encoding if
+	 * enabled.
+	 * 
+	 * @param value value to be encoded
+	 * @return encoded value
+	 */
 	public static String encodeSerializable(Serializable value) {
+		return encodeValue(value);
+	}
+
+	private static String encodeValue(Object value) {
 		String result = null;
 
-		if ((value instanceof String) && (!unescapeMagic((String) value).startsWith(STREAM_MAGIC))) {
-			/* shortcut for strings which do not start with STREAM_MAGIC */
+		if ((value instanceof String) && isPlainString((String) value)) {
+			/* shortcut for strings which do not start with an encoding magic */
 			result = (String) value;
-		} else if ((value == null) || (value instanceof Serializable)) {
-			try {
-				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-				ObjectOutputStream out = new ObjectOutputStream(buffer);
+		} else if ((value == null) || (value instanceof Body) || (value instanceof Serializable)) {
+			result = COMPACT_ENCODING ? encodeCompact(value) : encodeLegacy(value);
+		} else {
+			throw new IllegalArgumentException("provided value is not serializable");
+		}
 
-				try {
-					/* write magic */
-					out.writeShort(0x89c3);
-
-					/* serialize the object */
-					out.writeObject(value);
-				} finally {
-					/* close object outputstream to ensure output is flushed */
-					out.close();
-				}
+		return result;
+	}
 
-				/* output buffer as a Java string literal */
-				result = encodeLiteral(buffer.toByteArray());
-			} catch (IOException e) {
-				throw new IllegalArgumentException("can't encode value", e);
+	private static String encodeLegacy(Object value) {
+		String result = null;
+
+		if (value instanceof Body) {
+			value = new BodySerializer((Body) value);
+		}
+
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(buffer);
+
+			try {
+				/* write magic */
+				out.writeShort(0x89c3);
+
+				/* serialize the object */
+				out.writeObject(value);
+			} finally {
+				/* close object outputstream to ensure output is flushed */
+				out.close();
 			}
-		} else {
-			throw new IllegalArgumentException("provided value is not serializable");
+
+			/* output buffer as a Java string literal */
+			result = encodeLiteral(buffer.toByteArray());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("can't encode value", e);
 		}
 
 		return result;
 	}
 
+	private static String encodeCompact(Object value) {
+		String result = null;
+
+		try {
+			byte[] encoded = BinaryCacheValueCodec.toByteArray(value);
+			StringBuilder builder = new StringBuilder(ENCODED_MAGIC.length() + 2 + ((encoded.length + 2) / 3) * 4);
+
+			builder.append(ENCODED_MAGIC);
+			builder.append(ENCODED_VERSION_1);
+			builder.append(':');
+			builder.append(Base64.getEncoder().encodeToString(encoded));
+
+			result = builder.toString();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("can't encode value", e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * decode a value encoded by {@link #encodeSerializable(Serializable)}. Both the
+	 * versioned compact encoding and the legacy Java serialization literal
+	 * encoding are recognized.
+	 * 
+	 * @param data encoded value
+	 * @return decoded value
+	 */
 	public static Serializable decodeSerializable(String data) {
-		Serializable result = null;
+		Object result = decodeValue(data);
 
-		if (data != null) {
+		if (result instanceof Body) {
+			/* keep serializable contract for bodies */
+			result = new BodySerializer((Body) result);
+		}
+
+		return (Serializable) result;
+	}
+
+	private static Object decodeValue(String data) {
+		Object result = null;
+
+		if ((data != null) && data.startsWith(ENCODED_MAGIC)) {
+			int offset = ENCODED_MAGIC.length();
+
+			if ((data.length() < (offset + 2)) || (data.charAt(offset + 1) != ':')) {
+				throw new IllegalArgumentException("can't decode value, invalid encoding header");
+			}
+
+			char version = data.charAt(offset);
+
+			if (version != ENCODED_VERSION_1) {
+				throw new IllegalArgumentException(String.format("can't decode value, unsupported encoding version '%c'", version));
+			}
+
+			try {
+				result = BinaryCacheValueCodec.fromByteArray(Base64.getDecoder().decode(data.substring(offset + 2)));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("can't decode value", e);
+			}
+		} else if (data != null) {
 			/* unescape first characters to check for stream magic */
 			data = unescapeMagic(data);
 
@@ -422,7 +531,7 @@ public class ScriptHelper {
 					try {
 						in.readShort();
 
-						result = (Serializable) in.readObject();
+						result = in.readObject();
 					} finally {
 						in.close();
 					}
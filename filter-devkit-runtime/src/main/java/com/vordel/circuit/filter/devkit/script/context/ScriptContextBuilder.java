@@ -20,11 +20,14 @@ import com.vordel.circuit.filter.devkit.context.annotations.ExtensionFunction;
 import com.vordel.circuit.filter.devkit.context.annotations.InvocableMethod;
 import com.vordel.circuit.filter.devkit.context.annotations.SubstitutableMethod;
 import com.vordel.circuit.filter.devkit.context.resources.AbstractContextResourceProvider;
+import com.vordel.circuit.filter.devkit.context.resources.CacheValueCodec;
 import com.vordel.circuit.filter.devkit.context.resources.ContextResource;
 import com.vordel.circuit.filter.devkit.context.resources.ContextResourceProvider;
 import com.vordel.circuit.filter.devkit.context.resources.EHCacheResource;
 import com.vordel.circuit.filter.devkit.context.resources.FunctionResource;
 import com.vordel.circuit.filter.devkit.context.resources.KPSStoreResource;
+import com.vordel.circuit.filter.devkit.context.resources.LocalCacheResource;
+import com.vordel.circuit.filter.devkit.context.resources.OffHeapCacheResource;
 import com.vordel.circuit.filter.devkit.context.resources.PolicyResource;
 import com.vordel.circuit.filter.devkit.context.resources.SelectorResource;
 import com.vordel.circuit.filter.devkit.script.extension.ScriptExtensionBinder;
@@ -151,12 +154,33 @@ public final class ScriptContextBuilder {
 	 * @throws ScriptException if name or configured cache name are missing.
 	 */
 	public ScriptContextBuilder attachCacheResourceByName(String name, String cacheName) throws ScriptException {
+		return attachCacheResourceByName(name, cacheName, CacheValueCodec.SERIALIZED);
+	}
+
+	/**
+	 * Attach a Cache resource using configured name and a specific value codec.
+	 * Used only for context creation without Advanced Script Filter reference
+	 * binding.
+	 * 
+	 * @param name      name of resource to be created
+	 * @param cacheName Cache configured name.
+	 * @param codec     codec used to store and retrieve cached values (see
+	 *                  {@link CacheValueCodec#BINARY})
+	 * @return this instance of builder
+	 * @throws ScriptException if name, configured cache name or codec are
+	 *                         missing.
+	 */
+	public ScriptContextBuilder attachCacheResourceByName(String name, String cacheName, CacheValueCodec codec) throws ScriptException {
 		checkName(name);
 
 		if (cacheName == null) {
 			throw new ScriptException("cache name parameter cannot be null");
 		}
 
+		if (codec == null) {
+			throw new ScriptException("codec parameter cannot be null");
+		}
+
 		try {
 			EHCacheResource.getCache(cacheName);
 		} catch (CircuitAbortException e) {
@@ -167,13 +191,55 @@ public final class ScriptContextBuilder {
 			throw error;
 		}
 
-		EHCacheResource resource = new EHCacheResource(cacheName);
+		EHCacheResource resource = new EHCacheResource(cacheName, codec);
 
 		resources.put(name, resource);
 
 		return this;
 	}
 
+	/**
+	 * Attach an in-heap local cache resource bounded by entry count.
+	 * 
+	 * @param name        name of resource to be created
+	 * @param maximumSize maximum number of entries
+	 * @param ttl         default time to live in seconds (0 for no expiration)
+	 * @return this instance of builder
+	 * @throws ScriptException if name is missing or maximum size is invalid.
+	 */
+	public ScriptContextBuilder attachLocalCacheResource(String name, long maximumSize, int ttl) throws ScriptException {
+		checkName(name);
+
+		if (maximumSize <= 0) {
+			throw new ScriptException("maximum size must be positive");
+		}
+
+		resources.put(name, new LocalCacheResource(maximumSize, ttl));
+
+		return this;
+	}
+
+	/**
+	 * Attach an off-heap cache resource for large binary payloads.
+	 * 
+	 * @param name     name of resource to be created
+	 * @param capacity maximum off-heap memory in bytes
+	 * @param ttl      default time to live in seconds (0 for no expiration)
+	 * @return this instance of builder
+	 * @throws ScriptException if name is missing or capacity is invalid.
+	 */
+	public ScriptContextBuilder attachOffHeapCacheResource(String name, long capacity, int ttl) throws ScriptException {
+		checkName(name);
+
+		try {
+			resources.put(name, new OffHeapCacheResource(capacity, ttl));
+		} catch (IllegalArgumentException e) {
+			throw new ScriptException(e.getMessage());
+		}
+
+		return this;
+	}
+
 	/**
 	 * Attach a selector resource using expression and coerced type.
 	 * 
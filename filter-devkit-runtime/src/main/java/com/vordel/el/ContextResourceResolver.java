@@ -75,11 +75,19 @@ public class ContextResourceResolver extends ELResolver {
 
 	private Object getValue(ELContext context, ContextResourceProvider extension, String property) {
 		Dictionary dict = getDictionary(context);
+		Object result = extension.getContextResource(property);
 
-		/* use a regular dictionary to have regular gateway behavior */
-		ContextResourceDictionary resolver = new ContextResourceDictionary(extension, dict);
+		if (result == null) {
+			/* use a regular dictionary to have regular gateway behavior */
+			ContextResourceDictionary resolver = new ContextResourceDictionary(extension, dict);
 
-		return resolver.resolve(property);
+			result = DictionaryResolver.createSlice(resolver, property);
+		} else {
+			/* resource found, no need for a dictionary slice */
+			result = ContextResourceDictionary.substitute(dict, result, property);
+		}
+
+		return result;
 	}
 
 	@Override
@@ -178,70 +186,27 @@ public class ContextResourceResolver extends ELResolver {
 		return result;
 	}
 
+	/**
+	 * coerce function arguments according to the given method signature. Callers
+	 * which invoke the same method repeatedly should create a
+	 * {@link FunctionCoercion} once and reuse it.
+	 * 
+	 * @param method target method
+	 * @param params arguments to be coerced
+	 * @return coerced arguments
+	 */
 	public static Object[] coerceFunctionArguments(Method method, Object[] params) {
-		TypeConverter typeConverter = Selector.getTypeConverter();
-		Class<?>[] types = method.getParameterTypes();
-		Object[] args = new Object[types.length];
-
-		if (method.isVarArgs()) {
-			int varargIndex = types.length - 1;
-
-			if (params.length < varargIndex) {
-				throw new ELException("Bad argument count");
-			}
-
-			for (int i = 0; i < varargIndex; i++) {
-				coerceValue(args, i, typeConverter, params[i], types[i]);
-			}
-
-			Class<?> varargType = types[varargIndex].getComponentType();
-			int length = params.length - varargIndex;
-			Object array = null;
-
-			if (length == 1) {
-				Object source = params[varargIndex];
-				if (source != null && source.getClass().isArray()) {
-					if (types[varargIndex].isInstance(source)) { // use source array as is
-						array = source;
-					} else { // coerce array elements
-						length = Array.getLength(source);
-						array = Array.newInstance(varargType, length);
-						for (int i = 0; i < length; i++) {
-							coerceValue(array, i, typeConverter, Array.get(source, i), varargType);
-						}
-					}
-				} else { // single element array
-					array = Array.newInstance(varargType, 1);
-					coerceValue(array, 0, typeConverter, source, varargType);
-				}
-			} else {
-				array = Array.newInstance(varargType, length);
-				for (int i = 0; i < length; i++) {
-					coerceValue(array, i, typeConverter, params[varargIndex + i], varargType);
-				}
-			}
-
-			args[varargIndex] = array;
-		} else {
-			if (params.length != args.length) {
-				throw new ELException("Bad argument count");
-			}
+		return new FunctionCoercion(method).coerce(params);
+	}
 
-			for (int i = 0; i < args.length; i++) {
-				coerceValue(args, i, typeConverter, params[i], types[i]);
-			}
-		}
+	private static Object coerceValue(TypeConverter typeConverter, Object value, Class<?> type, NumberCoercion number) {
+		Object param = null;
 
-		return args;
-	}
+		if (value != null) {
+			param = number.coerce(value);
 
-	private static void coerceValue(Object array, int index, TypeConverter typeConverter, Object value, Class<?> type) {
-		if (value != null || type.isPrimitive()) {
-			if (coerceNumber(array, index, value, type)) {
-				/* number types coerced */
-			} else if (value != null) {
+			if (param == null) {
 				Class<?> clazz = value.getClass();
-				Object param = null;
 
 				if (DictionaryResolver.isResolvable(clazz)) {
 					/* means null, will end in NullPointerException for primitives */
@@ -251,66 +216,244 @@ public class ContextResourceResolver extends ELResolver {
 				} else {
 					param = typeConverter.convert(value, type);
 				}
-
-				Array.set(array, index, param);
-			} else {
-				/* will end in NullPointerException */
-				Array.set(array, index, null);
 			}
 		}
+
+		/* null will end in NullPointerException for primitives */
+		return param;
 	}
 
-	private static boolean coerceNumber(Object array, int index, Object value, Class<?> type) {
-		if (value instanceof Number) {
-			Object param = null;
+	/**
+	 * Number and Character coercion target, computed once per parameter type. Order
+	 * of checks is the same as the legacy per call coercion.
+	 */
+	private static enum NumberCoercion {
+		BYTE {
+			@Override
+			protected Object coerce(Number value) {
+				return Byte.valueOf(value.byteValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return Byte.valueOf((byte) value.charValue());
+			}
+		},
+		SHORT {
+			@Override
+			protected Object coerce(Number value) {
+				return Short.valueOf(value.shortValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return Short.valueOf((short) value.charValue());
+			}
+		},
+		INTEGER {
+			@Override
+			protected Object coerce(Number value) {
+				return Integer.valueOf(value.intValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return Integer.valueOf(value.charValue());
+			}
+		},
+		CHARACTER {
+			@Override
+			protected Object coerce(Number value) {
+				return Character.valueOf((char) value.intValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return value;
+			}
+		},
+		FLOAT {
+			@Override
+			protected Object coerce(Number value) {
+				return Float.valueOf(value.floatValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return Float.valueOf(value.charValue());
+			}
+		},
+		LONG {
+			@Override
+			protected Object coerce(Number value) {
+				return Long.valueOf(value.longValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return Long.valueOf(value.charValue());
+			}
+		},
+		DOUBLE {
+			@Override
+			protected Object coerce(Number value) {
+				return Double.valueOf(value.doubleValue());
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return Double.valueOf(value.charValue());
+			}
+		},
+		NONE {
+			@Override
+			protected Object coerce(Number value) {
+				return null;
+			}
+
+			@Override
+			protected Object coerce(Character value) {
+				return null;
+			}
+		};
+
+		protected abstract Object coerce(Number value);
+
+		protected abstract Object coerce(Character value);
 
+		/**
+		 * @param value value to be coerced
+		 * @return coerced value or <code>null</code> if value is not a number or a
+		 *         character (or if target type is not a number)
+		 */
+		private Object coerce(Object value) {
+			if (value instanceof Number) {
+				return coerce((Number) value);
+			} else if (value instanceof Character) {
+				return coerce((Character) value);
+			}
+
+			return null;
+		}
+
+		private static NumberCoercion of(Class<?> type) {
 			if (type.equals(byte.class) || type.isAssignableFrom(Byte.class)) {
-				param = Byte.valueOf(((Number) value).byteValue());
+				return BYTE;
 			} else if (type.equals(short.class) || type.isAssignableFrom(Short.class)) {
-				param = Short.valueOf(((Number) value).shortValue());
+				return SHORT;
 			} else if (type.equals(int.class) || type.isAssignableFrom(Integer.class)) {
-				param = Integer.valueOf(((Number) value).intValue());
+				return INTEGER;
 			} else if (type.equals(char.class) || type.isAssignableFrom(Character.class)) {
-				param = Character.valueOf((char) ((Number) value).intValue());
+				return CHARACTER;
 			} else if (type.equals(float.class) || type.isAssignableFrom(Float.class)) {
-				param = Float.valueOf(((Number) value).floatValue());
+				return FLOAT;
 			} else if (type.equals(long.class) || type.isAssignableFrom(Long.class)) {
-				param = Long.valueOf(((Number) value).longValue());
+				return LONG;
 			} else if (type.equals(double.class) || type.isAssignableFrom(Double.class)) {
-				param = Double.valueOf(((Number) value).doubleValue());
+				return DOUBLE;
+			}
+
+			return NONE;
+		}
+	}
+
+	/**
+	 * Coercion plan for a function signature. Parameter types and number coercions
+	 * are computed once, so each call only converts values.
+	 * 
+	 * @author rdesaintleger@axway.com
+	 */
+	public static final class FunctionCoercion {
+		private final Class<?>[] types;
+		private final NumberCoercion[] numbers;
+		private final boolean varArgs;
+
+		private final Class<?> varargType;
+		private final NumberCoercion varargNumber;
+
+		public FunctionCoercion(Method method) {
+			Class<?>[] types = method.getParameterTypes();
+			NumberCoercion[] numbers = new NumberCoercion[types.length];
+
+			for (int index = 0; index < types.length; index++) {
+				numbers[index] = NumberCoercion.of(types[index]);
+			}
+
+			this.types = types;
+			this.numbers = numbers;
+			this.varArgs = method.isVarArgs();
+
+			if (varArgs) {
+				this.varargType = types[types.length - 1].getComponentType();
+				this.varargNumber = NumberCoercion.of(varargType);
 			} else {
-				return false;
+				this.varargType = null;
+				this.varargNumber = null;
 			}
+		}
 
-			Array.set(array, index, param);
+		public Object[] coerce(Object[] params) {
+			TypeConverter typeConverter = Selector.getTypeConverter();
+			Object[] args = new Object[types.length];
 
-			return true;
-		} else if (value instanceof Character){
-			Object param = null;
+			if (varArgs) {
+				int varargIndex = types.length - 1;
 
-			if (type.equals(byte.class) || type.isAssignableFrom(Byte.class)) {
-				param = Byte.valueOf((byte) ((Character) value).charValue());
-			} else if (type.equals(short.class) || type.isAssignableFrom(Short.class)) {
-				param = Short.valueOf((short) ((Character) value).charValue());
-			} else if (type.equals(int.class) || type.isAssignableFrom(Integer.class)) {
-				param = Integer.valueOf(((Character) value).charValue());
-			} else if (type.equals(char.class) || type.isAssignableFrom(Character.class)) {
-				param = value;
-			} else if (type.equals(float.class) || type.isAssignableFrom(Float.class)) {
-				param = Float.valueOf(((Character) value).charValue());
-			} else if (type.equals(long.class) || type.isAssignableFrom(Long.class)) {
-				param = Long.valueOf(((Character) value).charValue());
-			} else if (type.equals(double.class) || type.isAssignableFrom(Double.class)) {
-				param = Double.valueOf(((Character) value).charValue());
+				if (params.length < varargIndex) {
+					throw new ELException("Bad argument count");
+				}
+
+				for (int i = 0; i < varargIndex; i++) {
+					args[i] = coerceValue(typeConverter, params[i], types[i], numbers[i]);
+				}
+
+				int length = params.length - varargIndex;
+				Object array = null;
+
+				if (length == 1) {
+					Object source = params[varargIndex];
+					if (source != null && source.getClass().isArray()) {
+						if (types[varargIndex].isInstance(source)) { // use source array as is
+							array = source;
+						} else { // coerce array elements
+							length = Array.getLength(source);
+							array = Array.newInstance(varargType, length);
+							for (int i = 0; i < length; i++) {
+								setVararg(array, i, coerceValue(typeConverter, Array.get(source, i), varargType, varargNumber));
+							}
+						}
+					} else { // single element array
+						array = Array.newInstance(varargType, 1);
+						setVararg(array, 0, coerceValue(typeConverter, source, varargType, varargNumber));
+					}
+				} else {
+					array = Array.newInstance(varargType, length);
+					for (int i = 0; i < length; i++) {
+						setVararg(array, i, coerceValue(typeConverter, params[varargIndex + i], varargType, varargNumber));
+					}
+				}
+
+				args[varargIndex] = array;
 			} else {
-				return false;
+				if (params.length != args.length) {
+					throw new ELException("Bad argument count");
+				}
+
+				for (int i = 0; i < args.length; i++) {
+					args[i] = coerceValue(typeConverter, params[i], types[i], numbers[i]);
+				}
 			}
 
-			Array.set(array, index, param);
+			return args;
+		}
 
-			return true;
-		} else {
-			return false;
+		private void setVararg(Object array, int index, Object value) {
+			if (array instanceof Object[]) {
+				/* reference array, no need for reflection */
+				((Object[]) array)[index] = value;
+			} else if ((value != null) || varargType.isPrimitive()) {
+				Array.set(array, index, value);
+			}
 		}
 	}
 
@@ -323,33 +466,14 @@ public class ContextResourceResolver extends ELResolver {
 			this.dict = dict;
 		}
 
-		/**
-		 * internal resolve. This method will return a dictionary slice if no property
-		 * is found
-		 * 
-		 * @param key
-		 * @return
-		 */
-		private Object resolve(String key) {
-			Object result = extension.getContextResource(key);
-
-			if (result == null) {
-				result = DictionaryResolver.createSlice(this, key);
-			} else {
-				result = substitute(result, key);
-			}
-
-			return result;
-		}
-
 		@Override
 		public Object get(String key) {
 			Object result = extension.getContextResource(key);
 
-			return result == null ? null : substitute(result, key);
+			return result == null ? null : substitute(dict, result, key);
 		}
 
-		private Object substitute(Object result, String key) {
+		private static Object substitute(Dictionary dict, Object result, String key) {
 			do {
 				if (result instanceof ViewableResource) {
 					/* got a selector special view, return it */
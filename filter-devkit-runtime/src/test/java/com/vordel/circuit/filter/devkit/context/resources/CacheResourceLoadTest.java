@@ -0,0 +1,188 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.vordel.circuit.CircuitAbortException;
+
+/**
+ * single flight loading tests for {@link CacheResource#getOrLoad(Object, CacheLoader, int)}
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class CacheResourceLoadTest {
+	private static final int CALLERS = 32;
+	private static final long TIMEOUT = 10000L;
+
+	@Test(timeout = TIMEOUT)
+	public void loaderRunsOnceForConcurrentCallers() throws Exception {
+		CacheResource cache = new LocalCacheResource(100, 0);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch proceed = new CountDownLatch(1);
+		ConcurrentLinkedQueue<Object> results = new ConcurrentLinkedQueue<Object>();
+
+		runConcurrently(() -> {
+			results.add(cache.getOrLoad("key", (key) -> {
+				loads.incrementAndGet();
+
+				/* hold the load until all other callers wait for it */
+				await(proceed);
+
+				return "value";
+			}));
+		}, proceed);
+
+		assertEquals(1, loads.get());
+		assertEquals(CALLERS, results.size());
+
+		for (Object result : results) {
+			assertEquals("value", result);
+		}
+
+		assertEquals("value", cache.getCachedValue("key"));
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void loaderErrorIsPropagatedToWaiters() throws Exception {
+		CacheResource cache = new LocalCacheResource(100, 0);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch proceed = new CountDownLatch(1);
+		ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<String>();
+		CacheLoader failing = (key) -> {
+			loads.incrementAndGet();
+			await(proceed);
+
+			throw new CircuitAbortException("load failed");
+		};
+
+		runConcurrently(() -> {
+			try {
+				cache.getOrLoad("key", failing);
+			} catch (CircuitAbortException e) {
+				errors.add(e.getMessage());
+			}
+		}, proceed);
+
+		assertEquals(1, loads.get());
+		assertEquals(CALLERS, errors.size());
+
+		for (String error : errors) {
+			assertEquals("load failed", error);
+		}
+
+		/* nothing is cached on error and the next caller loads again */
+		assertNull(cache.getCachedValue("key"));
+		assertEquals("value", cache.getOrLoad("key", (key) -> {
+			loads.incrementAndGet();
+
+			return "value";
+		}));
+		assertEquals(2, loads.get());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void recursiveLoadIsRejected() throws Exception {
+		CacheResource cache = new LocalCacheResource(100, 0);
+
+		try {
+			cache.getOrLoad("key", new CacheLoader() {
+				@Override
+				public Object load(Object key) throws CircuitAbortException {
+					return cache.getOrLoad(key, this);
+				}
+			});
+
+			fail("recursive load must be rejected");
+		} catch (CircuitAbortException e) {
+			assertTrue(e.getMessage().startsWith("Recursive load"));
+		}
+
+		/* failed load is unregistered */
+		assertEquals("value", cache.getOrLoad("key", (key) -> "value"));
+	}
+
+	/**
+	 * run the given action on CALLERS threads. The proceed latch is released once
+	 * all threads but the loading one are waiting.
+	 */
+	private static void runConcurrently(CallerAction action, CountDownLatch proceed) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger started = new AtomicInteger();
+		ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+		List<Thread> callers = new ArrayList<Thread>();
+
+		for (int index = 0; index < CALLERS; index++) {
+			Thread caller = new Thread(() -> {
+				try {
+					await(start);
+					started.incrementAndGet();
+					action.run();
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			}, String.format("caller-%d", index));
+
+			caller.start();
+			callers.add(caller);
+		}
+
+		start.countDown();
+
+		/* every caller is either running the loader or waiting for its result */
+		while ((started.get() < CALLERS) || (countWaiting(callers) < CALLERS)) {
+			Thread.sleep(10L);
+		}
+
+		proceed.countDown();
+
+		for (Thread caller : callers) {
+			caller.join();
+		}
+
+		if (!failures.isEmpty()) {
+			throw new AssertionError("caller failed", failures.peek());
+		}
+	}
+
+	private static int countWaiting(List<Thread> callers) {
+		int waiting = 0;
+
+		for (Thread caller : callers) {
+			Thread.State state = caller.getState();
+
+			if ((state == Thread.State.WAITING) || (state == Thread.State.TIMED_WAITING)) {
+				waiting++;
+			}
+		}
+
+		return waiting;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+				throw new IllegalStateException("timeout");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface CallerAction {
+		void run() throws Exception;
+	}
+}
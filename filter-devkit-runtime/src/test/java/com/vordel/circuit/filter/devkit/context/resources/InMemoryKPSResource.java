@@ -0,0 +1,141 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.vordel.kps.ObjectExists;
+import com.vordel.kps.ObjectNotFound;
+import com.vordel.kps.Store;
+
+/**
+ * in-memory KPS resource used as backing store in tests. Entries are copied on
+ * each read and write. Primary key reads and read key queries are counted so
+ * tests can check which lookup path has been used.
+ *
+ * @author rdesaintleger@axway.com
+ */
+class InMemoryKPSResource extends KPSResource {
+	private final Map<Object, Map<String, Object>> entries = new LinkedHashMap<Object, Map<String, Object>>();
+	private final String primaryKey;
+
+	final AtomicInteger primaryReads = new AtomicInteger();
+	final AtomicInteger queries = new AtomicInteger();
+
+	InMemoryKPSResource(String primaryKey) {
+		this.primaryKey = primaryKey;
+	}
+
+	/**
+	 * store an entry without going through resource wrappers (simulates a write
+	 * made by another node)
+	 *
+	 * @param entry entry to be stored
+	 */
+	synchronized void store(Map<String, Object> entry) {
+		entries.put(entry.get(primaryKey), copy(entry));
+	}
+
+	@Override
+	public Store getStore() {
+		throw new UnsupportedOperationException("in-memory resource has no store");
+	}
+
+	@Override
+	public String getPrimaryKey() {
+		return primaryKey;
+	}
+
+	@Override
+	public List<String> getReadKey() {
+		return Collections.singletonList(primaryKey);
+	}
+
+	@Override
+	public synchronized Map<String, Object> getCached(Object id) throws ObjectNotFound {
+		primaryReads.incrementAndGet();
+
+		return copy(find(id));
+	}
+
+	@Override
+	public synchronized Map<String, Object> getCachedByReadKey(List<Pair<String, Object>> pairs) throws ObjectNotFound {
+		queries.incrementAndGet();
+
+		for (Map<String, Object> entry : entries.values()) {
+			boolean matches = true;
+
+			for (Pair<String, Object> pair : pairs) {
+				matches &= pair.getRight().equals(entry.get(pair.getLeft()));
+			}
+
+			if (matches) {
+				return copy(entry);
+			}
+		}
+
+		throw new ObjectNotFound(String.format("no entry for %s", pairs));
+	}
+
+	@Override
+	public synchronized Map<String, Object> getEntry(Object key) throws ObjectNotFound {
+		return copy(find(key));
+	}
+
+	@Override
+	public synchronized Map<String, Object> createEntry(Map<String, Object> entry) throws ObjectExists {
+		Object id = entry.get(primaryKey);
+
+		if (entries.containsKey(id)) {
+			throw new ObjectExists(String.format("entry '%s' already exists", id));
+		}
+
+		entries.put(id, copy(entry));
+
+		return copy(entry);
+	}
+
+	@Override
+	public Map<String, Object> createEntry(Map<String, Object> entry, int ttl) throws ObjectExists {
+		return createEntry(entry);
+	}
+
+	@Override
+	public synchronized Map<String, Object> updateEntry(Map<String, Object> entry) throws ObjectNotFound, ObjectExists {
+		Object id = entry.get(primaryKey);
+
+		find(id);
+		entries.put(id, copy(entry));
+
+		return copy(entry);
+	}
+
+	@Override
+	public Map<String, Object> updateEntry(Map<String, Object> entry, int ttl) throws ObjectNotFound, ObjectExists {
+		return updateEntry(entry);
+	}
+
+	@Override
+	public synchronized void removeEntry(Object key) throws ObjectNotFound {
+		find(key);
+		entries.remove(key);
+	}
+
+	private Map<String, Object> find(Object id) throws ObjectNotFound {
+		Map<String, Object> entry = entries.get(id);
+
+		if (entry == null) {
+			throw new ObjectNotFound(String.format("entry '%s' not found", id));
+		}
+
+		return entry;
+	}
+
+	private static Map<String, Object> copy(Map<String, Object> entry) {
+		return new LinkedHashMap<String, Object>(entry);
+	}
+}
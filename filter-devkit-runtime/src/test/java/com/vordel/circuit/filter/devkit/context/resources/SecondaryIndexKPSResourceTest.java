@@ -0,0 +1,170 @@
+package com.vordel.circuit.filter.devkit.context.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vordel.kps.ObjectNotFound;
+
+/**
+ * index maintenance tests for {@link SecondaryIndexKPSResource}
+ *
+ * @author rdesaintleger@axway.com
+ */
+public class SecondaryIndexKPSResourceTest {
+	private static final String ID = "id";
+	private static final String EMAIL = "email";
+
+	private final InMemoryKPSResource store = new InMemoryKPSResource(ID);
+
+	private SecondaryIndexKPSResource createIndex(int maxSize) {
+		return new SecondaryIndexKPSResource(store, Collections.singleton(EMAIL), maxSize);
+	}
+
+	@Test
+	public void createdEntryIsResolvedFromIndex() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(10);
+
+		index.createEntry(entry("1", "a@example.com"));
+
+		assertLookup(index, "a@example.com", "1");
+		assertEquals(0, store.queries.get());
+		assertEquals(1, index.getIndexSize());
+	}
+
+	@Test
+	public void updatedEntryReplacesMapping() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(10);
+
+		index.createEntry(entry("1", "a@example.com"));
+		index.updateEntry(entry("1", "b@example.com"));
+
+		assertLookup(index, "b@example.com", "1");
+		assertEquals(0, store.queries.get());
+
+		/* old value is no longer indexed and not in the store */
+		assertMissing(index, "a@example.com");
+		assertEquals(1, store.queries.get());
+		assertEquals(1, index.getIndexSize());
+	}
+
+	@Test
+	public void deletedEntryIsUnindexed() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(10);
+
+		index.createEntry(entry("1", "a@example.com"));
+		index.removeEntry("1");
+
+		assertEquals(0, index.getIndexSize());
+		assertMissing(index, "a@example.com");
+		assertEquals(0, store.primaryReads.get());
+		assertEquals(1, store.queries.get());
+	}
+
+	@Test
+	public void valueMovedBetweenKeysKeepsNewMapping() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(10);
+
+		index.createEntry(entry("1", "a@example.com"));
+		index.createEntry(entry("2", "b@example.com"));
+
+		/* release value from first key, then give it to the second one */
+		index.updateEntry(entry("1", "c@example.com"));
+		index.updateEntry(entry("2", "a@example.com"));
+
+		assertLookup(index, "a@example.com", "2");
+		assertLookup(index, "c@example.com", "1");
+		assertMissing(index, "b@example.com");
+		assertEquals(1, store.queries.get());
+	}
+
+	@Test
+	public void valueTakenFromAnotherKeyIsNotDroppedWithIt() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(10);
+
+		index.createEntry(entry("1", "a@example.com"));
+		index.createEntry(entry("2", "b@example.com"));
+
+		/* value moves to the second key while the first key still holds it in the index */
+		index.updateEntry(entry("2", "a@example.com"));
+		assertLookup(index, "a@example.com", "2");
+
+		/* removing the first key must not remove the mapping now owned by the second key */
+		index.removeEntry("1");
+
+		assertLookup(index, "a@example.com", "2");
+		assertEquals(0, store.queries.get());
+		assertEquals(1, index.getIndexSize());
+	}
+
+	@Test
+	public void staleMappingFallsBackToQuery() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(10);
+
+		index.createEntry(entry("1", "a@example.com"));
+
+		/* updated by another node */
+		store.store(entry("1", "b@example.com"));
+
+		assertMissing(index, "a@example.com");
+		assertEquals(1, store.queries.get());
+
+		/* mapping has been fixed by the stale read */
+		assertLookup(index, "b@example.com", "1");
+		assertEquals(1, store.queries.get());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+		SecondaryIndexKPSResource index = createIndex(2);
+
+		index.createEntry(entry("1", "a@example.com"));
+		index.createEntry(entry("2", "b@example.com"));
+
+		/* access first key so the second one is the eldest */
+		assertLookup(index, "a@example.com", "1");
+
+		index.createEntry(entry("3", "c@example.com"));
+
+		assertEquals(2, index.getIndexSize());
+		assertLookup(index, "a@example.com", "1");
+		assertLookup(index, "c@example.com", "3");
+		assertEquals(0, store.queries.get());
+
+		/* evicted entry is resolved using a store query and indexed again */
+		assertLookup(index, "b@example.com", "2");
+		assertEquals(1, store.queries.get());
+		assertEquals(2, index.getIndexSize());
+	}
+
+	private static Map<String, Object> entry(String id, String email) {
+		Map<String, Object> entry = new LinkedHashMap<String, Object>();
+
+		entry.put(ID, id);
+		entry.put(EMAIL, email);
+
+		return entry;
+	}
+
+	private static void assertLookup(SecondaryIndexKPSResource index, String email, String id) throws ObjectNotFound {
+		Map<String, Object> entry = index.getCachedByField(EMAIL, email);
+
+		assertEquals(id, entry.get(ID));
+		assertEquals(email, entry.get(EMAIL));
+	}
+
+	private static void assertMissing(SecondaryIndexKPSResource index, String email) {
+		try {
+			index.getCachedByField(EMAIL, email);
+
+			fail(String.format("'%s' must not be found", email));
+		} catch (ObjectNotFound e) {
+			/* expected */
+		}
+	}
+}
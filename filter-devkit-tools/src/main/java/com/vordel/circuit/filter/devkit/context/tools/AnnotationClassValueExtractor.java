@@ -19,7 +19,10 @@ public class AnnotationClassValueExtractor<T> extends SimpleAnnotationValueVisit
 	}
 
 	public static AnnotationMirror getAnnotationMirror(Element element, Class<? extends Annotation> clazz) {
-		String typeName = clazz.getCanonicalName();
+		return getAnnotationMirror(element, clazz.getCanonicalName());
+	}
+
+	public static AnnotationMirror getAnnotationMirror(Element element, String typeName) {
 		List<? extends AnnotationMirror> annotations = element.getAnnotationMirrors();
 
 		for (AnnotationMirror annotation : annotations) {
@@ -1,5 +1,7 @@
 package com.vordel.circuit.filter.devkit.context.tools;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.HashMap;
@@ -130,6 +132,7 @@ public class ExtensionLibrariesGenerator extends AbstractProcessor {
 		if (!libraries.isEmpty()) {
 			Filer filer = processingEnv.getFiler();
 			Elements elements = processingEnv.getElementUtils();
+			Map<TypeElement, Set<String>> forceLoads = new HashMap<TypeElement, Set<String>>();
 
 			for (TypeElement element : libraries) {
 				/*
@@ -139,10 +142,71 @@ public class ExtensionLibrariesGenerator extends AbstractProcessor {
 				ExtensionLibraries annotation = element.getAnnotation(ExtensionLibraries.class);
 
 				if (annotation != null) {
+					Set<String> forceLoad = getForceLoadEntries(elements, element, annotation.classes());
+
 					writeLibrariesFile(filer, elements, element, annotation.value());
-					writeForceLoadFile(filer, elements, element, annotation.classes());
+					writeForceLoadFile(filer, elements, element, forceLoad);
+
+					forceLoads.put(element, forceLoad);
+				}
+			}
+
+			writeLibrariesIndex(filer, elements, forceLoads);
+		}
+	}
+
+	/**
+	 * Write the binary libraries index. This index allows the runtime to create
+	 * extension class loaders without reading the libraries and forceLoad
+	 * resources of each class. Layout is :
+	 * 
+	 * <pre>
+	 * int     magic ('VDKX')
+	 * short   version
+	 * int     entry count
+	 * entries :
+	 *   UTF   class binary name
+	 *   short library count
+	 *   UTF[] class path selector expressions
+	 *   short forced class count
+	 *   UTF[] forced class binary names
+	 * </pre>
+	 * 
+	 * @param filer      compiler standard filer.
+	 * @param elements   compiler element utils.
+	 * @param forceLoads classes to be loaded in the 'child first' class loader for
+	 *                   each annotated class.
+	 * @throws IOException if any error occurs
+	 */
+	private void writeLibrariesIndex(Filer filer, Elements elements, Map<TypeElement, Set<String>> forceLoads) throws IOException {
+		FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/vordel/libraries.idx");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.openOutputStream()));
+
+		try {
+			out.writeInt(ExtensionProviderGenerator.INDEX_MAGIC);
+			out.writeShort(ExtensionProviderGenerator.INDEX_VERSION);
+			out.writeInt(forceLoads.size());
+
+			for (Map.Entry<TypeElement, Set<String>> entry : forceLoads.entrySet()) {
+				TypeElement element = entry.getKey();
+				String[] entries = element.getAnnotation(ExtensionLibraries.class).value();
+				Set<String> forceLoad = entry.getValue();
+
+				out.writeUTF(elements.getBinaryName(element).toString());
+				out.writeShort(entries.length);
+
+				for (String library : entries) {
+					out.writeUTF(library);
+				}
+
+				out.writeShort(forceLoad.size());
+
+				for (String clazz : forceLoad) {
+					out.writeUTF(clazz);
 				}
 			}
+		} finally {
+			out.close();
 		}
 	}
 
@@ -172,13 +236,30 @@ public class ExtensionLibrariesGenerator extends AbstractProcessor {
 	 * 
 	 * @param filer   compiler standard filer.
 	 * @param element annotated class
-	 * @param classes list of classes to be loaded
+	 * @param entries list of classes to be loaded
 	 * @throws IOException if any error occurs
 	 */
-	private void writeForceLoadFile(Filer filer, Elements elements, TypeElement element, String[] classes) throws IOException {
+	private void writeForceLoadFile(Filer filer, Elements elements, TypeElement element, Set<String> entries) throws IOException {
 		FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", String.format("META-INF/vordel/forceLoad/%s", elements.getBinaryName(element).toString()));
 		Writer libraries = file.openWriter();
 
+		try {
+			for (String entry : entries) {
+				libraries.append(String.format("%s\n", entry));
+			}
+		} finally {
+			libraries.close();
+		}
+	}
+
+	/**
+	 * compute classes which needs to be loaded in the 'child first' class loader.
+	 * 
+	 * @param element annotated class
+	 * @param classes list of classes requested by the annotation
+	 * @return binary names of classes to be loaded
+	 */
+	private Set<String> getForceLoadEntries(Elements elements, TypeElement element, String[] classes) {
 		Set<TypeElement> linked = links.get(element);
 		Set<String> entries = new HashSet<String>();
 
@@ -218,13 +299,7 @@ public class ExtensionLibrariesGenerator extends AbstractProcessor {
 			entries.add(name.toString());
 		}
 
-		try {
-			for (String entry : entries) {
-				libraries.append(String.format("%s\n", entry));
-			}
-		} finally {
-			libraries.close();
-		}
+		return entries;
 	}
 
 	private void aggregateInnerTypes(Set<TypeElement> aggregated, TypeElement element) {
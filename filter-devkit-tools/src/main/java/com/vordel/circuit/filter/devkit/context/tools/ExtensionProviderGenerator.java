@@ -1,5 +1,7 @@
 package com.vordel.circuit.filter.devkit.context.tools;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.HashSet;
@@ -12,6 +14,7 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
@@ -22,6 +25,7 @@ import javax.tools.StandardLocation;
 
 import com.vordel.circuit.filter.devkit.context.annotations.ExtensionContext;
 import com.vordel.circuit.filter.devkit.context.annotations.ExtensionInstance;
+import com.vordel.circuit.filter.devkit.context.annotations.ExtensionLibraries;
 import com.vordel.circuit.filter.devkit.script.extension.annotations.ScriptExtension;
 
 /**
@@ -36,6 +40,19 @@ import com.vordel.circuit.filter.devkit.script.extension.annotations.ScriptExten
 		"com.vordel.circuit.filter.devkit.context.annotations.ExtensionInstance",
 		"com.vordel.circuit.filter.devkit.script.extension.annotations.ScriptExtension", })
 public class ExtensionProviderGenerator extends AbstractProcessor {
+	/**
+	 * binary index header ('VDKX'). The index format must be kept in sync with the
+	 * ExtensionScanner runtime class.
+	 */
+	public static final int INDEX_MAGIC = 0x56444B58;
+	public static final int INDEX_VERSION = 1;
+
+	/**
+	 * entry flag set when the class also declares extension libraries (it must be
+	 * loaded through its own class loader)
+	 */
+	public static final int FLAG_LIBRARIES = 0x08;
+
 	/**
 	 * Set of discovered classes
 	 */
@@ -111,9 +128,84 @@ public class ExtensionProviderGenerator extends AbstractProcessor {
 			} finally {
 				services.close();
 			}
+
+			writeExtensionsIndex(filer, elements);
+		}
+	}
+
+	/**
+	 * Write the binary extension index. This index is an ordering and resource
+	 * probe cache : the runtime uses it to sort classes by priority before loading
+	 * them and to skip per class scriptextensions, libraries and forceLoad resource
+	 * lookups. Registration itself still inspects loaded classes. Layout is :
+	 * 
+	 * <pre>
+	 * int     magic ('VDKX')
+	 * short   version
+	 * int     entry count
+	 * entries :
+	 *   UTF   class binary name
+	 *   int   priority (0 if not annotated)
+	 *   byte  flags (libraries)
+	 *   short script extension interface count
+	 *   UTF[] script extension interface binary names
+	 * </pre>
+	 * 
+	 * @param filer    compiler standard filer.
+	 * @param elements compiler element utils.
+	 * @throws IOException if any error occurs
+	 */
+	private void writeExtensionsIndex(Filer filer, Elements elements) throws IOException {
+		Types types = processingEnv.getTypeUtils();
+		FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/vordel/extensions.idx");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.openOutputStream()));
+
+		try {
+			out.writeInt(INDEX_MAGIC);
+			out.writeShort(INDEX_VERSION);
+			out.writeInt(extensions.size());
+
+			for (TypeElement element : extensions) {
+				AnnotationMirror annotation = AnnotationClassValueExtractor.getAnnotationMirror(element, ScriptExtension.class);
+				TypeMirror[] mirrors = annotation == null ? null : AnnotationClassArrayValueExtractor.getAnnotationTypeMirrorArrayValue(annotation, "value");
+
+				out.writeUTF(elements.getBinaryName(element).toString());
+				out.writeInt(getPriority(element));
+				out.writeByte(getFlags(element));
+
+				if (mirrors == null) {
+					out.writeShort(0);
+				} else {
+					out.writeShort(mirrors.length);
+
+					for (TypeMirror entry : mirrors) {
+						out.writeUTF(elements.getBinaryName((TypeElement) types.asElement(entry)).toString());
+					}
+				}
+			}
+		} finally {
+			out.close();
 		}
 	}
 
+	private static int getPriority(TypeElement element) {
+		AnnotationMirror annotation = AnnotationClassValueExtractor.getAnnotationMirror(element, "javax.annotation.Priority");
+		AnnotationValue value = annotation == null ? null : AnnotationClassValueExtractor.getAnnotationValue(annotation, "value");
+		Object priority = value == null ? null : value.getValue();
+
+		return priority instanceof Integer ? (Integer) priority : 0;
+	}
+
+	private static int getFlags(TypeElement element) {
+		int flags = 0;
+
+		if (AnnotationClassValueExtractor.getAnnotationMirror(element, ExtensionLibraries.class) != null) {
+			flags |= FLAG_LIBRARIES;
+		}
+
+		return flags;
+	}
+
 	private void writeScriptExtensionsFile(TypeElement element, TypeMirror[] entries) throws IOException {
 		Filer filer = processingEnv.getFiler();
 		Elements elements = processingEnv.getElementUtils();